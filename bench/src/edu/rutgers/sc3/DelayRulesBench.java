@@ -0,0 +1,57 @@
+package  edu.rutgers.sc3;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import ec.util.MersenneTwisterFast;
+import sim.util.distribution.*;
+
+import edu.rutgers.supply.*;
+
+/** Benchmarks DelayRules.drawDelayTime(), in the batch mode and in
+    the unit mode (where the delay for a batch of n units is the sum
+    of n draws), for batches of various sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelayRulesBench {
+
+    /** The number of units in the batch */
+    @Param({"1", "100", "10000"})
+    public long batchSize;
+
+    /** If true, the delay is drawn per unit */
+    @Param({"false", "true"})
+    public boolean unit;
+
+    /** "Uniform", "Triangular", or "Normal" */
+    @Param({"Uniform", "Triangular", "Normal"})
+    public String distribution;
+
+    private DelayRules rules;
+    private double now = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+	MersenneTwisterFast random = new MersenneTwisterFast(0);
+	String spec =
+	    distribution.equals("Uniform")? "Uniform,1,3" :
+	    distribution.equals("Triangular")? "Triangular,1,2,3" :
+	    "Normal,2,0.5";
+	// the parameter set is parsed the same way the config file is
+	edu.rutgers.util.Config config = BenchSupport.mkConfig("benchProd,delay," + spec);
+	AbstractDistribution d = config.get("benchProd").getDistribution("delay", random);
+	rules = new DelayRules(d, unit, null);
+    }
+
+    @Benchmark
+    public double drawDelayTime() {
+	return rules.drawDelayTime(now++, batchSize);
+    }
+}
@@ -0,0 +1,90 @@
+package  edu.rutgers.sc3;
+
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import sim.des.*;
+
+import edu.rutgers.supply.*;
+import edu.rutgers.util.*;
+
+/** Benchmarks InputStore.consumeOneBatch() and InputStore.hasEnough()
+    on a real SC-3 input buffer, taken from a model built from a config
+    file, holding a given number of lots.
+
+    <p>The config file is given by the "bench.config" system property
+    (by default, config/sc3.csv, relative to the current directory).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputStoreBench {
+
+    /** The number of lots in the buffer */
+    @Param({"10", "100", "1000"})
+    public int lots;
+
+    /** The production unit whose (first Batch-type) input buffer
+	is used */
+    @Param({"substrateSmallProd"})
+    public String production;
+
+    /** The size of each lot; consumption takes one and a half lots,
+	so that both split() and merge() are exercised */
+    static final double LOT_SIZE = 100;
+
+    private InputStore store;
+    private Batch prototype;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+	String config = System.getProperty("bench.config", "config/sc3.csv");
+	Demo.MakesDemo maker = new Demo.MakesDemo(new String[] {"-config", config, "-charts", "null", "-quiet"});
+	Demo demo = (Demo)maker.newInstance(0, maker.argvStripped);
+	demo.start();
+	Production p = (Production)demo.lookupNode(production);
+	if (p==null) throw new IllegalArgumentException("No production unit named " + production);
+	for(int j=0; j<p.nin && store==null; j++) {
+	    InputStore s = p.getEntrance(j);
+	    if (s.getTypicalProvided() instanceof Batch) store = s;
+	}
+	if (store==null) throw new IllegalArgumentException(production + " has no Batch inputs");
+	prototype = (Batch)store.getTypicalProvided();
+    }
+
+    /** Tops up the buffer to the specified number of lots */
+    private void fill() {
+	while(store.getContentAmount() < lots*LOT_SIZE) {
+	    store.doAccept(null, prototype.mkNewLot(LOT_SIZE, 0), LOT_SIZE, LOT_SIZE, true);
+	}
+    }
+
+    @Setup(Level.Iteration)
+    public void fillBuffer() {
+	fill();
+    }
+
+    /** One steady-state cycle of the buffer: the lots consumed by the
+	previous call are replaced (by one or two new lots), and then
+	one and a half lots are consumed. The refill is measured as well,
+	rather than done in a per-invocation setup method, whose own
+	overhead would be larger than the work measured. */
+    @Benchmark
+    public Batch consumeOneBatch() {
+	fill();
+	return store.consumeOneBatch(1.5*LOT_SIZE);
+    }
+
+    /** This does not consume anything, so the buffer is only filled
+	once per iteration */
+    @Benchmark
+    public boolean hasEnough() {
+	return store.hasEnough(LOT_SIZE * lots / 2);
+    }
+}
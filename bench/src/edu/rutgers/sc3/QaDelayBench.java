@@ -0,0 +1,76 @@
+package  edu.rutgers.sc3;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import sim.engine.*;
+import sim.des.*;
+
+import edu.rutgers.supply.*;
+import edu.rutgers.util.*;
+
+/** Benchmarks QaDelay.offerReceiver(), i.e. the QA decision on one
+    ripe lot and its shipment to the receiver, with lot-level and
+    unit-level decisions.
+
+    <p>In the model, the lots get into the QaDelay's entity list when
+    they become ripe, which requires the schedule to run. Here, a
+    subclass puts the lot directly into the list instead, so that
+    only the QA step itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QaDelayBench {
+
+    /** The number of units in each lot */
+    @Param({"10", "1000"})
+    public double lotSize;
+
+    /** If true, the QA decision is made for each unit */
+    @Param({"false", "true"})
+    public boolean unitLevel;
+
+    /** If true (and unitLevel), the unit-level decisions are
+	sampled with a single binomial draw */
+    @Param({"false", "true"})
+    public boolean binomial;
+
+    static final double DISCARD_PROB = 0.05;
+
+    /** A QaDelay whose entity list can be loaded directly */
+    static class LoadableQaDelay extends QaDelay {
+	LoadableQaDelay(SimState state, Config config, Batch typical, boolean unitLevel) throws Exception {
+	    super(state, config, config.get("benchProd"), typical, null, DISCARD_PROB, 0, null, unitLevel);
+	}
+	void load(Batch b) {
+	    entities.clear();
+	    entities.add(b);
+	}
+    }
+
+    private Batch prototype;
+    private LoadableQaDelay qa;
+    private MSink receiver;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+	Config config = BenchSupport.mkConfig("benchDrug,expiration,180",
+					      "benchProd,qaBinomial," + binomial);
+	prototype = BenchSupport.mkPrototype(config, "benchDrug");
+	SimState state = new SimState(0);
+	qa = new LoadableQaDelay(state, config, prototype, unitLevel);
+	receiver = new MSink(state, prototype);
+    }
+
+    @Benchmark
+    public boolean offerReceiver() {
+	qa.load(prototype.mkNewLot(lotSize, 0));
+	return qa.offerReceiver(receiver, lotSize);
+    }
+}
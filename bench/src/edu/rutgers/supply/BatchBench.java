@@ -0,0 +1,56 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.rutgers.util.*;
+
+/** Benchmarks Batch.split() and Batch.merge(), which are used
+    whenever a production unit consumes part of a lot, or combines
+    several lots into one input batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBench {
+
+    /** The size of the lot being split */
+    @Param({"100", "100000"})
+    public double lotSize;
+
+    private Batch prototype;
+    private Batch lot;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+	Config config = BenchSupport.mkConfig("benchDrug,expiration,180");
+	prototype = BenchSupport.mkPrototype(config, "benchDrug");
+    }
+
+    @Setup(Level.Iteration)
+    public void newLot() {
+	lot = prototype.mkNewLot(lotSize, 0);
+    }
+
+    /** Splits a unit off the lot, and merges it back */
+    @Benchmark
+    public double splitMerge() {
+	Batch b = lot.split(1);
+	lot.merge(b);
+	return lot.getContentAmount();
+    }
+
+    /** Creates a new lot and merges it into the main one; this is
+	what happens when several lots are combined into one input
+	batch */
+    @Benchmark
+    public double mergeNew() {
+	lot.merge(prototype.mkNewLot(1, 0));
+	return lot.getContentAmount();
+    }
+}
@@ -0,0 +1,47 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.io.*;
+
+import sim.engine.*;
+import sim.des.*;
+
+import edu.rutgers.util.*;
+
+/** Fixtures shared by the JMH benchmarks: small programmatically
+    built configs, product prototypes, and a Queue whose entity list
+    can be handed to methods (such as the ExpiredSink methods) that
+    operate on a provider's internal list.
+ */
+public class BenchSupport {
+
+    /** Creates a Config from the specified CSV lines (in the same
+	format as the files in the config directory), by writing them
+	into a temporary file and reading it back.
+     */
+    public static Config mkConfig(String... lines) throws IOException, IllegalInputException {
+	File f = File.createTempFile("bench-", ".csv");
+	f.deleteOnExit();
+	PrintWriter w = new PrintWriter(new FileWriter(f));
+	for(String line: lines) w.println(line);
+	w.close();
+	return Config.readConfig(f);
+    }
+
+    /** Creates a prototype for Batches of the named product. The
+	product's parameters (e.g. "expiration") are taken from the
+	config, if it has a para set with that name. */
+    public static Batch mkPrototype(Config config, String product) throws IllegalInputException {
+	return Batch.mkPrototype(new CountableResource(product, 1), config);
+    }
+
+    /** A Queue that exposes its internal entity list */
+    public static class BenchQueue extends sim.des.Queue {
+	public BenchQueue(SimState state, Resource typical) {
+	    super(state, typical);
+	}
+	public LinkedList<Entity> getEntityList() {
+	    return entities;
+	}
+    }
+}
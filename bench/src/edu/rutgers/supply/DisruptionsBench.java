@@ -0,0 +1,59 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.rutgers.supply.Disruptions.Type;
+
+/** Benchmarks Disruptions.hasToday() on a scenario with a given
+    number of disruptions, spread over a given number of units.
+    Each invocation asks about the next day, for one of the units,
+    as the simulation does every day for every unit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisruptionsBench {
+
+    /** The number of disruptions in the scenario */
+    @Param({"10", "1000", "100000"})
+    public int disruptions;
+
+    /** The number of units that the disruptions affect */
+    @Param({"10", "100"})
+    public int units;
+
+    /** The simulation length, in days */
+    static final int DAYS = 2000;
+
+    private Disruptions scenario;
+    private String[] unitNames;
+    private int day = 0, k = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	unitNames = new String[units];
+	for(int j=0; j<units; j++) unitNames[j] = "unit" + j;
+	Random r = new Random(0);
+	scenario = new Disruptions();
+	for(int j=0; j<disruptions; j++) {
+	    scenario.add(Type.ShipmentLoss, unitNames[r.nextInt(units)], r.nextInt(DAYS), 1 + r.nextInt(30), 1);
+	}
+	// build the index before measuring
+	scenario.hasToday(Type.ShipmentLoss, unitNames[0], 0);
+    }
+
+    @Benchmark
+    public int hasToday() {
+	if (k == units) {
+	    k = 0;
+	    day = (day+1) % DAYS;
+	}
+	return scenario.hasToday(Type.ShipmentLoss, unitNames[k++], day).size();
+    }
+}
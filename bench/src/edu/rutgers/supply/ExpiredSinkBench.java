@@ -0,0 +1,101 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import sim.engine.*;
+import sim.des.*;
+
+import edu.rutgers.util.*;
+
+/** Benchmarks the two ways of getting rid of expired lots in a
+    queue holding a given number of lots, a given fraction of which
+    have expired: the old ExpiredSink.hasEnoughNonExpired(), which
+    scans the queue, and ExpiredSink.purgeExpired(), which pulls the
+    expired lots out of an ExpirationIndex (this is what InputStore
+    uses now).
+
+    <p>Since both methods remove the expired lots they find, each call
+    needs a fresh queue. Rather than rebuilding the queue in a
+    per-invocation setup method (whose own overhead would distort the
+    timing), a pool of POOL identical queues (and indexes) is built
+    before each iteration, and each iteration is a single batch of
+    POOL calls, one on each queue. The reported time is therefore
+    that of POOL calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = ExpiredSinkBench.POOL)
+@Measurement(iterations = 20, batchSize = ExpiredSinkBench.POOL)
+@Fork(1)
+public class ExpiredSinkBench {
+
+    /** The number of calls in each measured batch */
+    static final int POOL = 100;
+
+    /** The number of lots in the queue */
+    @Param({"10", "100", "1000"})
+    public int lots;
+
+    /** The fraction of lots that have expired */
+    @Param({"0", "0.1", "0.9"})
+    public double expiredFraction;
+
+    /** Shelf life of the product, in days */
+    static final double EXPIRATION = 180;
+    static final double LOT_SIZE = 100;
+
+    private SimState state;
+    private Batch prototype;
+    private ExpiredSink sink;
+    private BenchSupport.BenchQueue[] queues = new BenchSupport.BenchQueue[POOL];
+    private ExpirationIndex[] indexes = new ExpirationIndex[POOL];
+    /** The next queue (and index) to use */
+    private int next;
+    private double[] removed = new double[1];
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+	Config config = BenchSupport.mkConfig("benchDrug,expiration," + EXPIRATION);
+	prototype = BenchSupport.mkPrototype(config, "benchDrug");
+	state = new SimState(0);
+	sink = new ExpiredSink(state, prototype, 0);
+    }
+
+    /** Fills the queues; the oldest lots in each were made so long
+	ago that they have already expired by day 0 */
+    @Setup(Level.Iteration)
+    public void fill() {
+	int nExpired = (int)Math.round(lots * expiredFraction);
+	for(int k=0; k<POOL; k++) {
+	    queues[k] = new BenchSupport.BenchQueue(state, prototype);
+	    indexes[k] = new ExpirationIndex();
+	    for(int j=0; j<lots; j++) {
+		double made = (j < nExpired) ? -2*EXPIRATION : 0;
+		Batch b = prototype.mkNewLot(LOT_SIZE, made);
+		queues[k].accept(null, b, LOT_SIZE, LOT_SIZE);
+		indexes[k].add(b);
+	    }
+	}
+	next = 0;
+    }
+
+    /** Asks for all the good product there is */
+    @Benchmark
+    public boolean hasEnoughNonExpired() {
+	double want = LOT_SIZE * (lots - Math.round(lots * expiredFraction));
+	BenchSupport.BenchQueue queue = queues[next++];
+	removed[0] = 0;
+	return sink.hasEnoughNonExpired(queue, queue.getEntityList(), removed, want);
+    }
+
+    /** Removes all expired lots with the help of the index */
+    @Benchmark
+    public double purgeExpired() {
+	BenchSupport.BenchQueue queue = queues[next];
+	return sink.purgeExpired(queue, queue.getEntityList(), indexes[next++]);
+    }
+}
@@ -0,0 +1,64 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Benchmarks OnOrder.subtract() and OnOrder.refresh() on an order
+    list of a given length. Each invocation places one new order and
+    then either fills one order's worth of shipments (subtract) or
+    expires the oldest order (refresh), so that the length of the
+    list stays constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OnOrderBench {
+
+    /** The number of outstanding orders */
+    @Param({"10", "100", "1000"})
+    public int orders;
+
+    /** The size of each order */
+    static final double SIZE = 100;
+
+    private Channel channel;
+    private OnOrder filling, expiring;
+    private double now;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+	BatchProvider2 sender = new BatchProvider2() {
+		public void request(Order order) {}
+		public void registerChannel(Channel channel) {}
+		public String getName() { return "benchSender"; }
+		public void setName(String name) {}
+	    };
+	channel = new Channel(sender, null, "benchSender.benchReceiver");
+	filling = new OnOrder(Double.POSITIVE_INFINITY);
+	expiring = new OnOrder(orders);
+	for(now=0; now<orders; now++) {
+	    filling.add(new Order(now, channel, SIZE));
+	    expiring.add(new Order(now, channel, SIZE));
+	}
+    }
+
+    /** Fills the oldest order, with two partial shipments */
+    @Benchmark
+    public double subtract() {
+	filling.add(new Order(now++, channel, SIZE));
+	filling.subtract(now, SIZE/2);
+	return filling.subtract(now, SIZE/2) + filling.sum();
+    }
+
+    /** Expires the oldest order */
+    @Benchmark
+    public int refresh() {
+	expiring.add(new Order(now++, channel, SIZE));
+	return expiring.refresh(now+1).size();
+    }
+}
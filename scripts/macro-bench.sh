@@ -0,0 +1,19 @@
+#!/bin/csh
+#----------------------------------------------------
+# Runs the end-to-end benchmark suite (edu.rutgers.test.MacroBench),
+# and compares the results with a baseline, if one is given.
+# Sample usage:
+# scripts/macro-bench.sh -until 2000 -out bench.csv
+# scripts/macro-bench.sh -until 2000 -out bench.csv -baseline bench-baseline.csv -tolerance 0.15
+#----------------------------------------------------
+
+
+#-- The directory where this script is
+set d=`dirname $0`
+
+
+set h=`(cd $d/..; pwd)`
+setenv CLASSPATH $h/lib/demo.jar:$h/lib/'*':$h/classes
+
+
+java edu.rutgers.test.MacroBench -root $h $argv[1-]
@@ -13,6 +13,6 @@ set h=`(cd $d/../..; pwd)`
 setenv CLASSPATH $h/work/lib/demo.jar:$h/lib/'*'
 
 
-time java -Xprof edu.rutgers.pharma3.RepeatTest  $argv[1-]
+time java edu.rutgers.pharma3.RepeatTest  $argv[1-]
 
 #-time 10
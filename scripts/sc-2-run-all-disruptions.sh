@@ -2,7 +2,9 @@
 
 #------------------------------------------------------------------
 # This script runs the SC-2 simulation app with each sample
-# disruption files
+# disruption files, starting a separate JVM for each file. See also
+# sc-2-sweep.sh, which does all runs in one JVM, and prints a summary
+# table.
 #------------------------------------------------------------------
 
 #------------------------------------------------------------------
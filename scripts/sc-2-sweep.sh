@@ -0,0 +1,19 @@
+#!/bin/csh
+#----------------------------------------------------
+# Runs the SC-2 simulation app with each sample disruption file, in a
+# single JVM (edu.rutgers.sc2.ScenarioSweep), and prints a summary
+# table. This is a faster alternative to sc-2-run-all-disruptions.sh.
+# Sample usage:
+# scripts/sc-2-sweep.sh -seeds 3 -threads 16 -until 2000 -charts null -summary sweep.csv
+#----------------------------------------------------
+
+
+#-- The directory where this script is
+set d=`dirname $0`
+
+
+set h=`(cd $d/..; pwd)`
+setenv CLASSPATH $h/lib/demo.jar:$h/lib/'*':$h/classes
+
+
+java edu.rutgers.sc2.ScenarioSweep -config $h/config/sc2.csv -dir $h/config/dis-sc2 $argv[1-]
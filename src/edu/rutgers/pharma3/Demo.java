@@ -43,8 +43,8 @@ public class Demo extends SimState {
     /** Should be set by MakeDemo.newInstance(), and then used in start() */
     protected Config config=null;
     protected Disruptions disruptions = null;
-    Vector<Disruption> hasDisruptionToday(Disruptions.Type type, String unit) {
-	if (disruptions == null) return new Vector<Disruption>();
+    java.util.List<Disruption> hasDisruptionToday(Disruptions.Type type, String unit) {
+	if (disruptions == null) return Collections.emptyList();
 	double time = schedule.getTime();
 	return disruptions.hasToday(type, unit, time);
     }
@@ -203,7 +203,7 @@ public class Demo extends SimState {
     }
   
 
-    static class MakesDemo implements  MakesSimState {
+    public static class MakesDemo implements  MakesSimState {
    
 	/** The Config object contains the parameters for
 	    various supply chain elements, read from a
@@ -213,7 +213,7 @@ public class Demo extends SimState {
 	final private Disruptions disruptions0;
 	/** The data from the command line argument array, after the removal of options
 	    interpreted by the constructor (such as -config XXX) will be put here. */
-	final String[] argvStripped;
+	public final String[] argvStripped;
 
 	/** For use in test.TestSc3 */
 	//public int repeat=1;
@@ -223,7 +223,7 @@ public class Demo extends SimState {
 	    @param argv The actual command line array. The constructor will look for
 	    the -config and -disrupt options in it.
 	 */
-	MakesDemo(String[] argv) throws IOException, IllegalInputException    {
+	public MakesDemo(String[] argv) throws IOException, IllegalInputException    {
 
 	    String confPath = "../config/pharma3.csv";
 	    String disruptPath = null;
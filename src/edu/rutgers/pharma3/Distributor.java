@@ -28,8 +28,13 @@ public class Distributor extends Pool
 	setOffersImmediately(false); // shipping to be done only on the proper schedule
 
 	interval = (int)para.getLong("interval");
+	dailyDemandHistory.ensureWindow(interval*MONTHS);
    }
 
+    /** How many months' worth of demand history is used to compute
+	the average monthly demand */
+    static final int MONTHS = 4;
+
  
     private int lastMonthShippedAt= -1;
   
@@ -50,7 +55,6 @@ public class Distributor extends Pool
 
 	double orderSize = 0;
 	if (month> lastMonthShippedAt) {
-	    final int MONTHS = 4;
 	    final int N = interval*MONTHS;
 	    double avgMonthDemand =  getRecentDemand(N)/MONTHS;
 	    if (t < N) avgMonthDemand  += (initial*(N-t))/N;
@@ -86,7 +90,7 @@ public class Distributor extends Pool
     }
     
     private void disrupt(SimState state) {
-	Vector<Disruption> vd = ((Demo)state).hasDisruptionToday(Disruptions.Type.Depletion,getName());
+	List<Disruption> vd = ((Demo)state).hasDisruptionToday(Disruptions.Type.Depletion,getName());
 	if (vd.size()==1) {
 	    // deplete inventory
 	    double amt = Math.round(vd.get(0).magnitude * 1e7);
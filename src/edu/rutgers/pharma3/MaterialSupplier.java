@@ -3,6 +3,7 @@ package  edu.rutgers.pharma3;
 import edu.rutgers.supply.*;
 
 import java.util.Vector;
+import java.util.List;
 import java.io.*;
 
 import sim.engine.*;
@@ -295,7 +296,7 @@ public class MaterialSupplier extends AbstractProduction
     
     /** Does nothing other than logging. */
     public void step(SimState state) throws IllegalArgumentException {
-	Vector<Disruption> vd = ((Demo)state).hasDisruptionToday(Disruptions.Type.Delay, getName());
+	List<Disruption> vd = ((Demo)state).hasDisruptionToday(Disruptions.Type.Delay, getName());
 	if (vd.size()==1) {
 	    // activate modified delay distribution
 	    try {
@@ -6,6 +6,10 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 
@@ -26,6 +30,11 @@ import sim.engine.SimState;
 import sim.util.Properties;
 import ec.util.Parameter;
 
+import edu.rutgers.supply.Charter;
+import edu.rutgers.supply.ContextRun;
+import edu.rutgers.supply.RunContext;
+import edu.rutgers.util.IllegalInputException;
+
 
 
 public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemForm
@@ -44,6 +53,17 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
     public double maximumTime;
     public int numTrials;
     public boolean rebuildSimState;   
+
+    /** The number of threads used to run the trials of one evaluation
+        concurrently (the "mason-trial-threads" parameter). This is
+        independent of ECJ's evalthreads. If 1 (the default), the trials
+        are run one after another, on the same SimState object, as they
+        always have been. */
+    public int trialThreads = 1;
+    /** Runs the concurrent trials. It is created when first needed, and
+        is shared by all clones of this Problem (i.e. all ECJ evaluation
+        threads). */
+    static ForkJoinPool trialPool;
     
 
     
@@ -169,6 +189,12 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
         	{
 			System.err.println("mason-rebuild-model missing or malformeds.  Default is false.");
         	}
+
+        trialThreads = state.parameters.getIntWithDefault(new ec.util.Parameter("mason-trial-threads"), null, 1);
+        if (trialThreads <= 0)
+            {
+            trialThreads = Runtime.getRuntime().availableProcessors();
+            }
      
         /*       		      
         numObjectives = base.getInt(new ec.util.Parameter("multi.fitness.num-objectives"), null);
@@ -225,45 +251,51 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
         {
         if (simstate == null || rebuildSimState)
             {
+            simstate = newSimState(state, 50957);          // some dummy random number seed
+            }
+        //simstate.random = state.random[threadnum];            // this is the real generator we'll use
+        }
+
+    /** Creates a new instance of the model class */
+    SimState newSimState(EvolutionState state, long seed)
+        {
+        SimState sim = null;
+        try
+            {
+            Class cls = Class.forName(modelClassName);
+
             try
                 {
-                Class cls = Class.forName(modelClassName);
+                Constructor cons = cls.getConstructor(new Class[] { Long.TYPE });
 
                 try
                     {
-                    Constructor cons = cls.getConstructor(new Class[] { Long.TYPE });
-
-                    try
-                        {
-                        simstate = (SimState)(cons.newInstance(new Object[] { Long.valueOf(50957) }));          // some dummy random number seed
-                        }
-                    catch (InstantiationException e)
-                        {
-                        state.output.fatal("Could not instantiate " + modelClassName);
-                        }
-                    catch (IllegalAccessException e)
-                        {
-                        state.output.fatal("Could not instantiate " + modelClassName);
-                        }
-                    catch (InvocationTargetException e)
-                        {
-                        state.output.fatal("Could not instantiate " + modelClassName);
-                        }
+                    sim = (SimState)(cons.newInstance(new Object[] { Long.valueOf(seed) }));
                     }
-                catch (NoSuchMethodException e)
+                catch (InstantiationException e)
                     {
-                    state.output.fatal("Could not find constructor(long) for " + modelClassName);
+                    state.output.fatal("Could not instantiate " + modelClassName);
+                    }
+                catch (IllegalAccessException e)
+                    {
+                    state.output.fatal("Could not instantiate " + modelClassName);
+                    }
+                catch (InvocationTargetException e)
+                    {
+                    state.output.fatal("Could not instantiate " + modelClassName);
                     }
-
                 }
-            catch(ClassNotFoundException e)
+            catch (NoSuchMethodException e)
                 {
-                state.output.fatal("Could not find class " + modelClassName);
+                state.output.fatal("Could not find constructor(long) for " + modelClassName);
                 }
-                        
-                                
+
             }
-        //simstate.random = state.random[threadnum];            // this is the real generator we'll use
+        catch(ClassNotFoundException e)
+            {
+            state.output.fatal("Could not find class " + modelClassName);
+            }
+        return sim;
         }
     
     public static Properties getProperties(SimState simstate)
@@ -316,6 +348,11 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
         
     //instead of ind, use combinedGenome because we are joining disruptions with safety stocks
 	void setProperties(EvolutionState state, double[] combinedGenome)
+	    {
+	    setProperties(state, simstate, combinedGenome);
+	    }
+
+	void setProperties(EvolutionState state, SimState simstate, double[] combinedGenome)
 	    {
 	    // We restrict the properties as:
 	    // 1. Don't expand collections (we're ignoring those properties anyway)
@@ -433,30 +470,23 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
 	        
 	        
 	        
+	        if (trialThreads > 1 && numTrials > 1)
+	            {
+	            double[][] r = runConcurrentTrials(state, combinedGenome, threadnum);
+	            // summed in the order of the trials, not in the order
+	            // in which they have finished, so that the result is
+	            // reproducible
+	            for(int i = 0; i < numTrials; i++)
+	                for(int j = 0; j < r[i].length; j++)
+	                    results[j] += r[i][j];
+	            }
+	        else
 	        for(int i = 0; i < numTrials; i++)
 	            {
 	            initSimState(state, threadnum);
-	            setProperties(state, combinedGenome); //implement
-	            simstate.start(); 
-	                        
-	            do
-	                {
-	                if (!simstate.schedule.step(simstate)) 
-	                    {
-	                    break; 
-	                    }
-	                
-	                else{
-	                System.out.println("stepping...");
-	                }
-	                }
-	            //while(simstate.schedule.getSteps() < maximumSteps); 
-	            while((simstate.schedule.getSteps() < maximumSteps) || (simstate.schedule.getTime() < maximumTime));
-	            double[] r = simstate.assess(numObjectives);
+	            double[] r = runTrial(state, simstate, combinedGenome);
 	            for(int j = 0; j < r.length; j++)
 	                results[j] += r[j];
-
-	            simstate.finish();
 	            }
 	                        
 	        for(int j = 0; j < results.length; j++){
@@ -509,6 +539,126 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
 
 		}
 
+    /** One trial: a run of the model with the parameters given by
+        combinedGenome, whose result is the model's assessment */
+    abstract class Trial extends ContextRun<SimState, double[]>
+        {
+        final EvolutionState state;
+        final double[] combinedGenome;
+        double[] assessment = null;
+
+        /** @param context The context to run the trial in, or null for
+            the current thread's context */
+        Trial(RunContext context, EvolutionState state, double[] combinedGenome)
+            {
+            super(context, maximumTime);
+            this.state = state;
+            this.combinedGenome = combinedGenome;
+            }
+
+        protected void beforeStart(SimState sim)
+            {
+            setProperties(state, sim, combinedGenome); //implement
+            }
+
+        /** Runs at least one step, and then until both maximumSteps
+            and maximumTime are reached */
+        protected boolean more(SimState sim)
+            {
+            return (sim.schedule.getSteps() == 0) || (sim.schedule.getSteps() < maximumSteps) || (sim.schedule.getTime() < maximumTime);
+            }
+
+        protected void beforeFinish(SimState sim)
+            {
+            assessment = sim.assess(numObjectives);
+            }
+
+        protected double[] result(SimState sim)
+            {
+            return assessment;
+            }
+        }
+
+    /** Runs one simulation with the specified parameters, in the
+        current thread's context, and returns its assessment */
+    double[] runTrial(EvolutionState state, final SimState simstate, double[] combinedGenome)
+        {
+        try
+            {
+            return new Trial(null, state, combinedGenome)
+                {
+                protected SimState create()
+                    {
+                    return simstate;
+                    }
+                }.run();
+            }
+        catch (IOException e)
+            {
+            state.output.fatal("Trial failed: " + e);
+            }
+        catch (IllegalInputException e)
+            {
+            state.output.fatal("Trial failed: " + e);
+            }
+        return null;  // never reached
+        }
+
+    /** Creates the shared trial pool, if it has not been created yet */
+    ForkJoinPool getTrialPool()
+        {
+        synchronized(Pharma3DemoCoevProblem2.class)
+            {
+            if (trialPool == null) trialPool = new ForkJoinPool(trialThreads);
+            return trialPool;
+            }
+        }
+
+    /** Runs numTrials simulations concurrently, each one on its own
+        SimState object, with its own random seed, and in its own
+        RunContext (so that the trials don't share lot numbers, order
+        IDs or chart files; the charts of trial i, if any, go into the
+        subdirectory trial-i of the chart directory).  The seeds are
+        drawn, in the order of the trials, from the ECJ thread's random
+        number generator, which makes the evaluation reproducible.
+        @return The assessments of all trials, in the order of the trials,
+        regardless of the order in which they have finished
+    */
+    double[][] runConcurrentTrials(final EvolutionState state, final double[] combinedGenome, int threadnum)
+        {
+        ForkJoinPool pool = getTrialPool();
+        Vector<ForkJoinTask<double[]>> tasks = new Vector<ForkJoinTask<double[]>>();
+        // The chart directory of the ECJ thread's context; the pool
+        // threads would only see the global one
+        final java.io.File chartDir = Charter.getDir();
+        for(int i = 0; i < numTrials; i++)
+            {
+            final int trial = i;
+            final long seed = state.random[threadnum].nextLong();
+            tasks.add(pool.submit(new Callable<double[]>()
+                {
+                public double[] call() throws IOException, IllegalInputException
+                    {
+                    return new Trial(new RunContext(chartDir, true, false), state, combinedGenome)
+                        {
+                        protected SimState create()
+                            {
+                            SimState sim = newSimState(state, seed);
+                            // the model's constructor may have set the chart directory
+                            java.io.File dir = Charter.getDir();
+                            if (dir != null) Charter.setDir(new java.io.File(dir, "trial-" + trial));
+                            return sim;
+                            }
+                        }.run();
+                    }
+                }));
+            }
+        double[][] r = new double[numTrials][];
+        for(int i = 0; i < numTrials; i++)
+            r[i] = tasks.get(i).join();
+        return r;
+        }
+
     public int postprocessPopulation(final EvolutionState state, Population pop, boolean[] assessFitness, boolean countVictoriesOnly)
         {
         int total = 0;
@@ -549,6 +699,7 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
             dataOut.writeDouble(maximumTime);
             dataOut.writeInt(numTrials);
             dataOut.writeBoolean(rebuildSimState);
+            dataOut.writeInt(trialThreads);
             dataOut.writeBoolean(treatParametersAsArray);
             int size = parameterType.length;
             dataOut.writeInt(size);
@@ -582,6 +733,7 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
             maximumTime = dataIn.readDouble();
             numTrials = dataIn.readInt();
             rebuildSimState = dataIn.readBoolean();
+            trialThreads = dataIn.readInt();
             treatParametersAsArray = dataIn.readBoolean();
             int size = dataIn.readInt();
             parameterType = new int[size];
@@ -640,6 +792,7 @@ public class Pharma3DemoCoevProblem2 extends Problem implements GroupedProblemFo
             mp.modelClassName = modelClassName;
             mp.numObjectives = numObjectives;
             mp.rebuildSimState = rebuildSimState;
+            mp.trialThreads = trialThreads;
             mp.treatParametersAsArray = treatParametersAsArray;
             mp.fitnessType = fitnessType;
             
@@ -247,18 +247,17 @@ HospitalPool,delayBackOrder,Triangular,7,10,15
     /** How much has  been demanded from this pool by its customers */
     double everSent = 0;
 
-    /** Records, for each day, how much has been sent by this pool*/
-    Vector<Double> dailyDemandHistory = new Vector<Double>();
+    /** Records, for each day, how much has been sent by this pool,
+	going back as far as the longest window any of our reorder
+	policies looks at */
+    final DemandHistory dailyDemandHistory = new DemandHistory(30);
     double demandedToday=0, sentToday=0;
     
     /** Records today's "sent" amount */
-    synchronized private void recordDemand(double demand) {
+    private void recordDemand(double demand) {
 	double t = state.schedule.getTime();
 	int j = (int)Math.round(t);
-	if (dailyDemandHistory.size()<=j) dailyDemandHistory.setSize(j+1);
-	Double _has = dailyDemandHistory.get(j);
-	double has = (_has==null)? 0: _has;
-	dailyDemandHistory.set(j, has + demand);
+	dailyDemandHistory.record(j, demand);
 	demandedToday += demand;
     }
 
@@ -268,19 +267,12 @@ HospitalPool,delayBackOrder,Triangular,7,10,15
 	return getRecentDemand(30);
     }
 
-    /** Get the demand for the last n days. 
-	FIXME: this could be made more efficient by keeping the running totals for each day,
-	but we just don't bother. */
+    /** Get the demand for the last n days. This is O(1), thanks to
+	the prefix sums kept in dailyDemandHistory. */
     double getRecentDemand(int n) {
 	double t = state.schedule.getTime();
 	int j = (int)Math.round(t);
-	if (dailyDemandHistory.size()<=j) dailyDemandHistory.setSize(j+1);
-	double sum=0;
-	for(int i=j; i>=j-n && i>0; i--) {
-	    Double has = dailyDemandHistory.get(i);
-	    if (has!=null)  sum+= dailyDemandHistory.get(i);
-	}
-	return sum;
+	return dailyDemandHistory.sum(j, n);
     }
     
     /** Handles the request from a downstream receiver (such as the EndConsumer) to send to it 
@@ -255,7 +255,7 @@ public class Production extends AbstractProduction
 
 	    InputStore p = inputStore[j];
 	    String name = p.getUnderlyingName();
-	    Vector<Disruption> vd = ((Demo)state).hasDisruptionToday(Disruptions.Type.Depletion, name);
+	    List<Disruption> vd = ((Demo)state).hasDisruptionToday(Disruptions.Type.Depletion, name);
 	    if (vd.size()==1) {
 		// deplete inventory
 		double amt = Math.round(vd.get(0).magnitude * 1e7);
@@ -64,8 +64,8 @@ public class Demo extends SimState {
     }
 
     
-    Vector<Disruption> hasDisruptionToday(Disruptions.Type type, String unit) {
-	if (disruptions == null) return new Vector<Disruption>();
+    java.util.List<Disruption> hasDisruptionToday(Disruptions.Type type, String unit) {
+	if (disruptions == null) return Collections.emptyList();
 	double time = schedule.getTime();
 	return disruptions.hasToday(type, unit, time);
     }
@@ -93,8 +93,32 @@ public class Demo extends SimState {
 	reporters.add(new Filler(text));
     }
     
+    /** If true, supply chain elements draw their random numbers from
+	their own streams, derived from the seed and the element's name
+	(see RandomStreams), rather than from the shared SimState.random.
+	This gives common random numbers across disruption scenarios
+	run with the same seed. So far, only the pools' choice of
+	supplier (Pool.pickRandomSupplier) uses a separate stream. */
+    private boolean independentStreams = false;
+    public void setIndependentStreams(boolean x) { independentStreams = x; }
+    public boolean getIndependentStreams() { return independentStreams; }
+    /** The random number streams for the current run; set in start() */
+    private RandomStreams streams;
+    /** The seed with which this Demo was created */
+    private final long runSeed;
+    
+    /** @return The random number streams of the model to which
+	the supply chain elements being built belong. If the model is
+	not a Demo, or its start() has not been called yet, all
+	elements share state.random. */
+    static RandomStreams streams(SimState state) {
+	RandomStreams s = (state instanceof Demo)? ((Demo)state).streams: null;
+	return (s!=null)? s: RandomStreams.shared(state.random);
+    }
+    
     public Demo(long seed)    {
 	super(seed);
+	runSeed = seed;
 	if (verbose) System.out.println("sc2.Demo()");
     }
 
@@ -103,6 +127,7 @@ public class Demo extends SimState {
 	super.start();
 	if (!quiet) System.out.println("Demo.start");
 	if (!quiet) System.out.println("Disruptions=" + disruptions);
+	streams = independentStreams? RandomStreams.independent(runSeed): RandomStreams.shared(random);
 	initSupplyChain();
 	final int CENSUS_INTERVAL=360;
 	if (verbose) schedule.scheduleRepeating(new Reporter(), CENSUS_INTERVAL);
@@ -393,6 +418,8 @@ public class Demo extends SimState {
 	*/
 	final private Config config0;
 	final private Disruptions disruptions0;
+	/** Set by the -crn option */
+	public boolean independentStreams = false;
 	/** The data from the command line argument array, after the removal of options
 	    interpreted by the constructor (such as -config XXX) will be put here. */
 	public final String[] argvStripped;
@@ -423,6 +450,9 @@ public class Demo extends SimState {
 		    confPath= argv[++j];
 		} else if (a.equals("-disrupt") && j+1<argv.length) {
 		    disruptPath= argv[++j];
+		} else if (a.equals("-crn")) {
+		    // common random numbers: per-node random streams
+		    independentStreams = true;
 		} else if (a.equals("-charts") && j+1<argv.length) {
 		    chartsPath= argv[++j];
 		    //} else if (a.equals("-repeat") && j+1<argv.length) {
@@ -460,6 +490,7 @@ public class Demo extends SimState {
 	    //demo.disruptions.add( Disruptions.Type.ShipmentLoss, "RawMaterialSupplier", 40, 30);
 	    demo.config = config0;
 	    demo.disruptions = disruptions0;
+	    demo.independentStreams = independentStreams;
 	}
 	
 	public SimState	newInstance(long seed, java.lang.String[] args) {
@@ -28,24 +28,57 @@ public class EE extends Batch
 	else return new  CountableResource(uname,n);
     }
     
-    private static  AbstractDistribution lifetimeDistribution, tbfDistribution;
-    private static DistributionUtil lifetimeDistributionUtil, tbfDistributionUtil;
+    /** The lifetime and time-between-failures distributions of the
+	current run. They are kept in the RunContext, rather than in
+	static fields, so that concurrently executed runs each use
+	their own (seeded) generator. */
+    private static class Distributions {
+	final AbstractDistribution lifetime, tbf;
+	final DistributionUtil lifetimeUtil, tbfUtil;
+	Distributions(SimState state, ParaSet para) throws IllegalInputException {
+	    lifetime = para.getDistribution("lifetime",state.random);
+	    tbf = para.getDistribution("tbf", state.random);
+	    lifetimeUtil = new DistributionUtil(lifetime, state.random);
+	    tbfUtil = new DistributionUtil(tbf, state.random);
+	}
+    }
+
+    private static Distributions dist() {
+	return (Distributions)RunContext.get().getModelData(EE.class);
+    }
+
+    /** The lifetime distribution of the current run. The cohort mode
+	of ServicedPatientPool tabulates the death hazard of devices by
+	age from it. */
+    static AbstractDistribution getLifetimeDistribution() {
+	return dist().lifetime;
+    }
+
+    /** Same as getLifetimeDistribution(), but for the time between failures */
+    static AbstractDistribution getTbfDistribution() {
+	return dist().tbf;
+    }
+
+    /** Draws the time an "aged" device has already been in use. In a
+	steady-state population, this has the same distribution as the
+	remaining lifetime of an aged device (see EEInfo). */
+    static double nextAgedLifetimeUsed() {
+	return Math.abs(dist().lifetimeUtil.nextAgedDouble());
+    }
 
+    /** Same as nextAgedLifetimeUsed(), but for the time in use since the last repair */
+    static double nextAgedTbfUsed() {
+	return Math.abs(dist().tbfUtil.nextAgedDouble());
+    }
 
-    /** Should be called once, before any actual patients are created */
+    /** Should be called once per run, before any actual patients are created */
     public static void init(SimState state, Config config ) throws IllegalInputException {
 	//prototype = mkPrototype(UEE, config);
 
 
 	ParaSet para = config.get(uname);
 	if (para==null) throw new  IllegalInputException("No config parameters specified for '" + uname +"' in config file read from " + config.readFrom);
-	lifetimeDistribution = para.getDistribution("lifetime",state.random);
-	tbfDistribution = para.getDistribution("tbf", state.random);
-
-
-	lifetimeDistributionUtil = new DistributionUtil(lifetimeDistribution);
-	tbfDistributionUtil = new DistributionUtil(tbfDistribution);
-
+	RunContext.get().setModelData(EE.class, new Distributions(state, para));
     }
 
     enum EndCode { PATIENT_CURED, EE_DIED, EE_BROKEN };
@@ -77,12 +110,13 @@ public class EE extends Batch
 	    init(aged);
 	}
 	private void init(boolean aged) {
+	    Distributions d = dist();
 	    if (aged) {
-		remainingLifetime =  Math.abs(lifetimeDistributionUtil.nextAgedDouble());
-		remainingTbf =  Math.abs(tbfDistributionUtil.nextAgedDouble());
+		remainingLifetime =  Math.abs(d.lifetimeUtil.nextAgedDouble());
+		remainingTbf =  Math.abs(d.tbfUtil.nextAgedDouble());
 	    } else {
-		remainingLifetime =  Math.abs(lifetimeDistribution.nextDouble());
-		remainingTbf =  Math.abs(tbfDistribution.nextDouble());
+		remainingLifetime =  Math.abs(d.lifetime.nextDouble());
+		remainingTbf =  Math.abs(d.tbf.nextDouble());
 	    }
 	}
 
@@ -148,7 +182,7 @@ public class EE extends Batch
 	    delayTime = 0;
 	    final double eps = 1e-6;
 	    if (remainingTbf <= eps) {
-		remainingTbf =  Math.abs(tbfDistribution.nextDouble());
+		remainingTbf =  Math.abs(dist().tbf.nextDouble());
 	    }
 	}
 
@@ -27,6 +27,10 @@ class InputStore extends sim.des.Queue {
     /** Keeps track of the amount of product that has been discarded because we discovered
 	that it was too close to expiration.  */
     final ExpiredSink expiredProductSink;
+
+    /** Keeps the stored batches ordered by expiration date, so that
+	expired ones can be purged without scanning the whole buffer */
+    private final ExpirationIndex expirationIndex = new ExpirationIndex();
   
     /** Simulates theft or destruction (disruption type A4 etc) */
     final Sink stolenDump;
@@ -123,6 +127,7 @@ class InputStore extends sim.des.Queue {
     }
 
     private boolean remove(Batch b) {
+	expirationIndex.remove(b);
 	return entities.remove(b);
     }
     
@@ -211,12 +216,11 @@ class InputStore extends sim.des.Queue {
     */
     boolean hasEnough(double inBatchSize) {
 	if (getTypicalProvided() instanceof Batch) {
-	    double expiredAmt[]={0};
-	    double t = state.schedule.getTime();
-
-	    boolean has = expiredProductSink.hasEnoughNonExpired(this, entities, expiredAmt, inBatchSize);
-	    currentStock -= expiredAmt[0];
-	    return has;
+	    // Once all expired lots have been purged, everything left
+	    // is good, so the running total is all we need to look at
+	    double expiredAmt = expiredProductSink.purgeExpired(this, entities, expirationIndex);
+	    currentStock -= expiredAmt;
+	    return currentStock >= inBatchSize;
 	} else if (getTypicalProvided()  instanceof CountableResource) {
 	    double spare = getAvailable() -  inBatchSize;
 	    return spare>=0;// || (safety!=null && safety.hasEnough(-spare));
@@ -274,6 +278,7 @@ class InputStore extends sim.des.Queue {
 	boolean z = super.accept(provider,  amount, atLeast,  atMost);
 	if (!z) throw new AssertionError();
 	currentStock += a;
+	if (amount instanceof Batch) expirationIndex.add((Batch)amount);
 
 	if (isInit) return z; // it's no time to do anything else as the system is not ready yet
 	
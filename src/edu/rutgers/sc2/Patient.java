@@ -22,7 +22,9 @@ public class Patient extends Entity {
     //private static Batch prototype;
     static Patient prototype;
 
-    static long idCnt = 0;
+    /** Shared by all runs, which may be executed concurrently (see
+	ScenarioSweep) */
+    static final java.util.concurrent.atomic.AtomicLong idCnt = new java.util.concurrent.atomic.AtomicLong();
     
     static class PatientInfo {
 	/** The date when the treatment started. The value is null until it has
@@ -38,14 +40,19 @@ public class Patient extends Entity {
 		
 	/** The attached EE, if any */
 	EE ee=null;
+	/** When the patient last entered the waiting queue (NaN if
+	    he never has, e.g. for the initial population) */
+	double waitingSince = Double.NaN;
 	// DS ds=null;
-	final long id = (idCnt++);
+	final long id = idCnt.getAndIncrement();
     }
 
-    /** Should be called once, before any actual patients are created */
-    public static void init(Config config ) throws IllegalInputException {	
+    /** Should be called before any actual patients are created. The
+	prototype is only created once, and then shared by all runs, so
+	that concurrent runs do not replace it under each other. */
+    public static synchronized void init(Config config ) throws IllegalInputException {	
 	//prototype = mkPrototype(UPatient, config);
-	prototype = new Patient(true);
+	if (prototype==null) prototype = new Patient(true);
     }
 
     /** Creates the prototype entity */
@@ -108,6 +108,7 @@ public class Pool extends sim.des.Queue
 	setName(name);
 	para = config.get(name);
 	if (para==null) throw new  IllegalInputException("No config parameters specified for pool named '" + name +"'");
+	supplierRandom = Demo.streams(state).get(name + ".supplier");
 
 	mode = para.getEnum(ReorderMode.class, "mode", ReorderMode.Mode1);
 	
@@ -327,18 +328,17 @@ HospitalPool,delayBackOrder,Triangular,7,10,15
     double everSent = 0;
     double sentToday=0;
     
-    /** Records, for each day, how much has been demanded from this pool*/
-    Vector<Double> dailyDemandHistory = new Vector<Double>();
+    /** Records, for each day, how much has been demanded from this pool,
+	going back as far as the longest window any of our reorder
+	policies looks at */
+    final DemandHistory dailyDemandHistory = new DemandHistory(30);
     double demandedToday=0;
     
     /** Records today's "demanded" amount */
-    synchronized private void recordDemand(double demand) {
+    private void recordDemand(double demand) {
 	double t = state.schedule.getTime();
 	int j = (int)Math.round(t);
-	if (dailyDemandHistory.size()<=j) dailyDemandHistory.setSize(j+1);
-	Double _has = dailyDemandHistory.get(j);
-	double has = (_has==null)? 0: _has;
-	dailyDemandHistory.set(j, has + demand);
+	dailyDemandHistory.record(j, demand);
 	demandedToday += demand;
     }
 
@@ -348,19 +348,12 @@ HospitalPool,delayBackOrder,Triangular,7,10,15
 	return getRecentDemand(30);
     }
 
-    /** Get the demand for the last n days. 
-	FIXME: this could be made more efficient by keeping the running totals for each day,
-	but we just don't bother. */
+    /** Get the demand for the last n days. This is O(1), thanks to
+	the prefix sums kept in dailyDemandHistory. */
     double getRecentDemand(int n) {
 	double t = state.schedule.getTime();
 	int j = (int)Math.round(t);
-	if (dailyDemandHistory.size()<=j) dailyDemandHistory.setSize(j+1);
-	double sum=0;
-	for(int i=j; i>=j-n && i>0; i--) {
-	    Double has = dailyDemandHistory.get(i);
-	    if (has!=null)  sum+= dailyDemandHistory.get(i);
-	}
-	return sum;
+	return dailyDemandHistory.sum(j, n);
     }
     
     /** Handles the request from a downstream receiver (such as the EndConsumer) to send to it 
@@ -718,6 +711,9 @@ HospitalPool,delayBackOrder,Triangular,7,10,15
 	return z;
     }
 
+    /** The random stream for the choice of supplier in reorderCheck() */
+    private final ec.util.MersenneTwisterFast supplierRandom;
+
     /** Chooses a supplier at random, using sup.fraction values as probabilities */
     static private Supplier pickRandomSupplier(Vector<Supplier> suppliers, ec.util.MersenneTwisterFast random) {
 	double probSum = 0;
@@ -766,7 +762,7 @@ HospitalPool,delayBackOrder,Triangular,7,10,15
 	boolean randomChoice = true; // as opposed to a fraction
 
 	Supplier[] vs = randomChoice?
-	    new Supplier[] {pickRandomSupplier(normalSuppliers,getState().random)} :
+	    new Supplier[] {pickRandomSupplier(normalSuppliers,supplierRandom)} :
 	    normalSuppliers.toArray(new Supplier[0]);			
 	    
 	for(Supplier sup: vs) {
@@ -69,7 +69,8 @@ public class ProdDelay extends SimpleDelay
 	return s;
     }
 
-    static private DecimalFormat df = new DecimalFormat("0.00#");    
+    /** Per instance, since DecimalFormat is not thread-safe (see ScenarioSweep) */
+    private final DecimalFormat df = new DecimalFormat("0.00#");
 
 
     public String report() {
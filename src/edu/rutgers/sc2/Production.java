@@ -331,7 +331,7 @@ class Production extends AbstractProduction
 
 	    Disruptions.Type type = Disruptions.Type.Depletion;
 	    
-	    Vector<Disruption> vd = ((Demo)state).hasDisruptionToday(type, dname);
+	    List<Disruption> vd = ((Demo)state).hasDisruptionToday(type, dname);
 	    if (vd.size()==1) {
 		// deplete inventory
 		//double amt = Math.round(vd.get(0).magnitude * 1e7);
@@ -0,0 +1,244 @@
+package  edu.rutgers.sc2;
+
+import edu.rutgers.supply.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import java.text.*;
+
+import sim.engine.*;
+
+import edu.rutgers.util.*;
+
+/** Runs the SC-2 model with every disruption scenario file in a
+    directory, and with each of several random seeds, all within a
+    single JVM, on a bounded thread pool. This replaces
+    scripts/sc-2-run-all-disruptions.sh, which started a new JVM (and
+    re-read the config file) for each scenario: here, the config file
+    is read once, all scenario files are read (with
+    Disruptions.readList()) before the first run starts, and the JIT
+    warm-up is only paid once.
+
+    <p>Each run is executed in its own RunContext; its charts (if
+    charting is on) go to the subdirectory "scenarioName/seed-NNN"
+    inside the chart directory given on the command line. At the end,
+    a single summary table, with one row for each (scenario, seed)
+    pair, is printed, and, if requested, written to a CSV file.
+
+    <p>Running several simulations at once relies on all mutable
+    per-run state of the SC-2 classes being kept in the RunContext
+    (or in the Demo object), rather than in static fields. This is the
+    case for the lot and order numbers, the charts, and the EE
+    lifetime and breakdown distributions (see EE.dist()). A new class
+    with static per-run data would have to follow the same pattern,
+    or else the sweep has to be run with -threads 1.
+
+    <p>Sample usage:
+<pre>
+java edu.rutgers.sc2.ScenarioSweep -config ../config/sc2.csv -dir ../config/dis-sc2 -seeds 3 -threads 16 -until 2000 -charts null -summary sweep.csv
+</pre>
+ */
+public class ScenarioSweep {
+
+    /** The results of one run */
+    public static class Result {
+	/** The name of the scenario file, without the ".csv" */
+	final public String scenario;
+	final public long seed;
+	/** The average length of the waiting queue over the run */
+	final public double avgWaiting;
+	/** The length of the waiting queue at the end of the run */
+	final public double finalWaiting;
+	/** The distribution of the patients' waiting times */
+	final public QuantileSketch waitingSketch;
+
+	Result(String _scenario, long _seed, Demo demo) {
+	    scenario = _scenario;
+	    seed = _seed;
+	    avgWaiting = demo.wpq.sumWaiting/ demo.wpq.nWaiting;
+	    finalWaiting = demo.wpq.getAvailable();
+	    waitingSketch = demo.spp.getWaitingSketch();
+	}
+    }
+
+    /** Creates the Demo objects, with the shared config */
+    private final Demo.MakesDemo maker;
+    /** The command line arguments (other than those interpreted by maker) */
+    private final String[] argv;
+    /** The number of time steps (days) to run each simulation for */
+    private final double until;
+    /** The directory inside which each run's chart directory will be
+	created, or null if no charting is needed */
+    private final File chartsBase;
+
+    /** Verbosity flags for each run */
+    boolean quiet=true, verbose=false;
+
+    public ScenarioSweep(Demo.MakesDemo _maker, String[] _argv, double _until, File _chartsBase) {
+	maker = _maker;
+	argv = _argv;
+	until = _until;
+	chartsBase = _chartsBase;
+    }
+
+    /** Runs one simulation, in the current thread, with its own RunContext.
+     */
+    Result runOne(final String scenario, final Disruptions disr, final long seed) throws IOException, IllegalInputException {
+	File dir = (chartsBase==null)? null: new File(new File(chartsBase, scenario), "seed-" + seed);
+	return new ContextRun<Demo,Result>(new RunContext(dir, quiet, verbose), until) {
+	    protected Demo create() {
+		Demo demo = (Demo)maker.newInstance(seed, argv);
+		demo.setDisruptions(disr);
+		return demo;
+	    }
+	    protected Result result(Demo demo) {
+		return new Result(scenario, seed, demo);
+	    }
+	}.run();
+    }
+
+    /** Runs every scenario with every seed, using a pool of the
+	specified number of threads.
+	@param names The names of the scenarios
+	@param scenarios The scenarios, in the same order as the names
+	@return An array of results, ordered by scenario, and then by seed
+     */
+    public Result[] run(String[] names, Disruptions[] scenarios, long[] seeds, int nThreads) {
+	ForkJoinPool pool = new ForkJoinPool(nThreads);
+	try {
+	    Vector<ForkJoinTask<Result>> tasks = new Vector<>();
+	    for(int i=0; i<scenarios.length; i++) {
+		final String name = names[i];
+		final Disruptions disr = scenarios[i];
+		for(final long seed: seeds) {
+		    tasks.add( pool.submit(new Callable<Result>() {
+			    public Result call() throws IOException, IllegalInputException {
+				return runOne(name, disr, seed);
+			    }
+			}));
+		}
+	    }
+	    Result[] results = new Result[tasks.size()];
+	    for(int j=0; j<results.length; j++) {
+		results[j] = tasks.get(j).join();
+	    }
+	    return results;
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    static final DecimalFormat df = new DecimalFormat("0.###");
+
+    /** The quantiles of the waiting time shown in the summary table */
+    static final double[] Q = {0.5, 0.9, 0.99};
+
+    /** Writes the summary table, one row per run, in CSV format */
+    static void writeSummary(PrintStream w, Result[] results) {
+	w.print("#scenario,seed,avgWaiting,finalWaiting,waitedPatients");
+	for(double q: Q) w.print(",waitTimeQ" + q);
+	w.println();
+	for(Result r: results) {
+	    w.print(r.scenario + "," + r.seed + "," + df.format(r.avgWaiting) + "," + df.format(r.finalWaiting) + "," + (long)r.waitingSketch.getCount());
+	    for(double q: Q) w.print("," + df.format(r.waitingSketch.quantile(q)));
+	    w.println();
+	}
+    }
+
+    /** In addition to all options understood by Demo.MakesDemo, understands
+	the following:
+	<pre>
+	-dir d -- the directory with the disruption scenario files
+	(default ../config/dis-sc2)
+	-match regex -- only the files whose names match this regular
+	expression are used (default: (sample|severe)-.*\.csv, as in
+	sc-2-run-all-disruptions.sh)
+	-seed s0 -- the first seed (default 0)
+	-seeds n -- the number of runs for each scenario (default 1);
+	they will use seeds s0, s0+1, ..., s0+n-1
+	-threads t -- the size of the thread pool (default: the number of
+	available processors)
+	-until t -- the number of days to simulate (default 2000)
+	-summary f -- also write the summary table into this CSV file
+	</pre>
+     */
+    public static void main(String[] argv) throws IOException, IllegalInputException {
+
+	File scenarioDir = new File("../config/dis-sc2");
+	String match = "(sample|severe)-.*\\.csv";
+	long seed0 = 0;
+	int nSeeds = 1;
+	int nThreads = Runtime.getRuntime().availableProcessors();
+	double until = 2000;
+	File summaryFile = null;
+
+	Vector<String> va = new Vector<String>();
+	for(int j=0; j<argv.length; j++) {
+	    String a = argv[j];
+	    if (a.equals("-dir") && j+1<argv.length) {
+		scenarioDir = new File(argv[++j]);
+	    } else if (a.equals("-match") && j+1<argv.length) {
+		match = argv[++j];
+	    } else if (a.equals("-seed") && j+1<argv.length) {
+		seed0 = Long.parseLong(argv[++j]);
+	    } else if (a.equals("-seeds") && j+1<argv.length) {
+		nSeeds = Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-threads") && j+1<argv.length) {
+		nThreads = Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-until") && j+1<argv.length) {
+		until = Double.parseDouble(argv[++j]);
+	    } else if (a.equals("-summary") && j+1<argv.length) {
+		summaryFile = new File(argv[++j]);
+	    } else {
+		va.add(a);
+	    }
+	}
+	if (nSeeds < 1) throw new  IllegalInputException("seeds<1");
+	if (nThreads < 1) throw new  IllegalInputException("threads<1");
+
+	final Pattern p = Pattern.compile(match);
+	File[] files = scenarioDir.listFiles(new FileFilter() {
+		public boolean accept(File f) {
+		    return f.isFile() && p.matcher(f.getName()).matches();
+		}
+	    });
+	if (files==null) throw new IOException("Cannot read directory " + scenarioDir);
+	if (files.length==0) throw new IllegalInputException("No files matching " + match + " in " + scenarioDir);
+	Arrays.sort(files);
+
+	String[] names = new String[files.length];
+	Disruptions[] scenarios = new Disruptions[files.length];
+	for(int i=0; i<files.length; i++) {
+	    names[i] = files[i].getName().replaceAll("\\.csv$", "");
+	    scenarios[i] = Disruptions.readList(files[i]);
+	}
+
+	Demo.MakesDemo maker = new Demo.MakesDemo(va.toArray(new String[0]));
+
+	// Unless -verbose was asked for, we keep the runs quiet, since
+	// the output of concurrent runs would be interleaved
+	ScenarioSweep sweep = new ScenarioSweep(maker, maker.argvStripped, until, Charter.getDir());
+	sweep.verbose = Demo.verbose;
+	sweep.quiet = !sweep.verbose;
+	Demo.quiet = sweep.quiet;
+
+	long seeds[] = new long[nSeeds];
+	for(int j=0; j<nSeeds; j++) seeds[j] = seed0 + j;
+
+	long t0 = System.currentTimeMillis();
+	Result[] results = sweep.run(names, scenarios, seeds, nThreads);
+	long t1 = System.currentTimeMillis();
+
+	writeSummary(System.out, results);
+	if (summaryFile!=null) {
+	    PrintStream w = new PrintStream(new FileOutputStream(summaryFile));
+	    writeSummary(w, results);
+	    w.close();
+	}
+	System.out.println("Ran " + files.length + " scenarios x " + nSeeds + " seeds on " + nThreads + " threads in " + (t1-t0)/1000.0 + " sec");
+	System.exit(0);
+    }
+
+}
@@ -1,7 +1,7 @@
 package  edu.rutgers.sc2;
 
 
-import java.util.Vector;
+import java.util.*;
 import java.io.*;
 
 import sim.engine.*;
@@ -17,6 +17,38 @@ import edu.rutgers.supply.Disruptions.Disruption;
 /** Patients are being treated (wear EE and DS) here. Each patient has
     his own randomly-chosen treatment time; thus it's a Delay and not
     a SimpleDelay.
+
+    <p>If the config parameter "cohorts" is true, the patients (both
+    here and in the WaitingPatientQueue) are modeled as counted
+    groups rather than individual Patient entities, which makes the
+    cost of a run independent of the number of patients. The patients
+    under treatment are grouped by the number of full days of
+    treatment received, and each day, the numbers of patients whose
+    EE device dies, whose device breaks, and whose treatment ends are
+    drawn for each group by binomial thinning. The probability that
+    the treatment ends on a given day is the hazard rate of the
+    serviceTime distribution (tabulated from a large sample of it), so
+    that the treatment times have the same distribution (rounded up
+    to whole days) as in the normal mode.
+
+    <p>The EE devices are counted too, grouped into age classes of
+    "ageClassDays" days (30 by default) by their total time in use
+    (which determines death) and by their time in use since the last
+    repair (which determines breakdown). A device in use dies (or
+    breaks) during a day with the hazard rate of the lifetime (or
+    time between failures) distribution for its age class; these
+    rates are tabulated from large samples of the distributions. The
+    devices are paired with patients at random: the patients who lose
+    their devices on a given day are drawn at random from all those
+    under treatment, and the devices returned by the cured patients
+    are drawn at random from all those in use. The ages of the idle
+    devices in eeHEP, and of those under repair, are kept as FIFO
+    lists, matching the order in which the pools hand them out. New
+    devices start at age 0; a repaired device keeps its lifetime age,
+    but starts a new time between failures; the "aged" initial
+    devices get ages drawn from the steady-state age distribution.
+    The same statistics (acceptance, cure, breakdown and death counts,
+    and the waiting time distribution) are collected in both modes.
 */
 public class ServicedPatientPool extends Delay implements Named, Reporting {
     AbstractDistribution serviceTimeDistribution;
@@ -127,9 +159,314 @@ public class ServicedPatientPool extends Delay implements Named, Reporting {
 	eeHEP.addVolunteerSender(eeReturner);
 	eeHEP.addVolunteerSender(repairPool);
 	
+	cohortMode = para.getBoolean("cohorts", false);
+	if (cohortMode) {
+	    wpq.useCohorts();
+	    binomial = new Binomial(1, 0.5, state.random);
+	    tabulateServiceTime();
+	    ageClassDays = para.getInt("ageClassDays", 30);
+	    if (ageClassDays<1) throw new IllegalInputException("Para set " + getName() + " invalid value for `ageClassDays'; must be positive");
+	    dieHazard = tabulateDailyHazard(EE.getLifetimeDistribution());
+	    breakHazard = tabulateDailyHazard(EE.getTbfDistribution());
+	    inUse = new int[dieHazard.length * breakHazard.length];
+	    // the initial stock of eeHEP
+	    boolean aged = config.get(eeHEP.getName()).getBoolean("initial.aged", false);
+	    addDevices(idle, (long)eeHEP.getContentAmount(), 0, 0, aged);
+	    idleCount = (long)eeHEP.getContentAmount();
+	}
+	
 	initialFill( state, config);
     }
 
+    /** Is the cohort mode on? */
+    final boolean cohortMode;
+    /** Cohort mode: inTreatment[a] is the number of patients under
+	treatment who have received a full days of treatment */
+    private int[] inTreatment;
+    /** Cohort mode: the total of inTreatment[] */
+    private long treatedCount = 0;
+    /** Cohort mode: hazard[a] is the probability that the treatment
+	of a patient who has received a days of treatment ends during
+	the next day; survival[a] is the probability that a patient's
+	treatment lasts more than a days. */
+    private double[] hazard, survival;
+    private Binomial binomial;
+
+    /** Cohort mode: the width, in days of use, of the device age classes */
+    private int ageClassDays;
+    /** Cohort mode: dieHazard[i] (breakHazard[j]) is the probability
+	that a device in lifetime age class i (TBF age class j) dies
+	(breaks) during the next day of use. The last class also
+	stands for all older devices. */
+    private double[] dieHazard, breakHazard;
+    /** Cohort mode: inUse[i*breakHazard.length + j] is the number of
+	devices in use that are in lifetime age class i and in TBF age
+	class j. Their total is always equal to treatedCount. */
+    private int[] inUse;
+    /** Cohort mode: the number of days of treatment so far. The
+	devices in use move to the next age classes every
+	ageClassDays days. */
+    private long cohortDays = 0;
+
+    /** Cohort mode: n devices in the same age classes; or, if aged
+	is true, n devices whose ages are to be drawn from the
+	steady-state distribution when they are put into use */
+    private static class DeviceGroup {
+	long n;
+	final int life, tbf;
+	final boolean aged;
+	DeviceGroup(long _n, int _life, int _tbf, boolean _aged) {
+	    n = _n;
+	    life = _life;
+	    tbf = _tbf;
+	    aged = _aged;
+	}
+    }
+
+    /** Cohort mode: the idle devices in eeHEP, and the devices in
+	the repair pool, in the order in which they will leave (for
+	the repair pool, approximately, as the repair times vary) */
+    private final ArrayDeque<DeviceGroup> idle = new ArrayDeque<>(), inRepair = new ArrayDeque<>();
+    /** Cohort mode: the totals of idle and inRepair */
+    private long idleCount = 0, inRepairCount = 0;
+
+    /** Tabulates the daily hazard rate of a device age distribution,
+	by age class, from a large sample of it. Within a class, the
+	rate is taken to be constant.
+	@return an array whose element i is the probability that a
+	device whose age is in class i fails during the next day
+     */
+    private double[] tabulateDailyHazard(AbstractDistribution dis) {
+	final int N = 100000;
+	int[] count = new int[1];
+	for(int j=0; j<N; j++) {
+	    int i = (int)(Math.abs(dis.nextDouble()) / ageClassDays);
+	    if (i >= count.length) count = Arrays.copyOf(count, Math.max(i+1, 2*count.length));
+	    count[i]++;
+	}
+	int len = count.length;
+	while(len>1 && count[len-1]==0) len--;
+	double[] h = new double[len];
+	int left = N;
+	for(int i=0; i<len; i++) {
+	    int next = left - count[i];
+	    // the daily rate that gives the class's survival ratio over
+	    // the ageClassDays days; the 0.5 keeps it below 1 in the last class
+	    h[i] = 1 - Math.pow((next + 0.5)/(left + 0.5), 1.0/ageClassDays);
+	    left = next;
+	}
+	return h;
+    }
+
+    /** Adds a group of n devices at the end of a list */
+    private static void addDevices(ArrayDeque<DeviceGroup> q, long n, int life, int tbf, boolean aged) {
+	if (n>0) q.addLast(new DeviceGroup(n, life, tbf, aged));
+    }
+
+    /** Removes up to n devices from the head of a list, splitting a
+	group if needed */
+    private static Vector<DeviceGroup> takeDevices(ArrayDeque<DeviceGroup> q, long n) {
+	Vector<DeviceGroup> v = new Vector<>();
+	while(n>0 && !q.isEmpty()) {
+	    DeviceGroup g = q.getFirst();
+	    if (g.n <= n) {
+		q.removeFirst();
+		v.add(g);
+		n -= g.n;
+	    } else {
+		g.n -= n;
+		v.add(new DeviceGroup(n, g.life, g.tbf, g.aged));
+		n = 0;
+	    }
+	}
+	return v;
+    }
+
+    /** Draws k of the total units counted in count[], at random and
+	without replacement, and removes them from count[]. The number
+	taken from each element is drawn as a binomial, conditional on
+	what is left, and adjusted to keep the total exactly k.
+	@param total the sum of count[]
+	@return the number of units drawn from each element
+    */
+    private int[] drawAtRandom(int[] count, long total, int k) {
+	int[] x = new int[count.length];
+	for(int m=0; m<count.length && k>0; m++) {
+	    int c = count[m];
+	    if (c==0) continue;
+	    int d = DistributionUtil.nextBinomial(binomial, k, (double)c/total);
+	    // no more than there is here; no less than the rest can provide
+	    d = (int)Math.max(Math.min(d, c), k - (total - c));
+	    x[m] = d;
+	    count[m] -= d;
+	    total -= c;
+	    k -= d;
+	}
+	return x;
+    }
+
+    /** Brings the lists of idle and under-repair devices up to date
+	with the actual contents of eeHEP and repairPool. The repaired
+	devices have gone back to eeHEP; any other increase in eeHEP
+	consists of new devices, and any decrease (e.g. expired
+	devices) is taken from the head of the list. */
+    private void syncDevices() {
+	long repaired = inRepairCount - (long)repairPool.getDelayed();
+	if (repaired>0) {
+	    for(DeviceGroup g: takeDevices(inRepair, repaired)) idle.addLast(g);
+	    inRepairCount -= repaired;
+	    idleCount += repaired;
+	}
+	long diff = (long)eeHEP.getContentAmount() - idleCount;
+	if (diff>0) addDevices(idle, diff, 0, 0, false);
+	else if (diff<0) takeDevices(idle, -diff);
+	idleCount += diff;
+    }
+
+    /** Puts n devices into use: the first n idle ones, unless
+	fromIdle is false, in which case n aged devices are used */
+    private void startUsing(long n, boolean fromIdle) {
+	Vector<DeviceGroup> v;
+	if (fromIdle) {
+	    v = takeDevices(idle, n);
+	    idleCount -= n;
+	} else {
+	    v = new Vector<>();
+	    v.add(new DeviceGroup(n, 0, 0, true));
+	}
+	int nb = breakHazard.length;
+	for(DeviceGroup g: v) {
+	    if (!g.aged) {
+		inUse[g.life*nb + g.tbf] += g.n;
+		continue;
+	    }
+	    for(long j=0; j<g.n; j++) {
+		int life = (int)Math.min(EE.nextAgedLifetimeUsed() / ageClassDays, dieHazard.length-1);
+		int tbf = (int)Math.min(EE.nextAgedTbfUsed() / ageClassDays, nb-1);
+		inUse[life*nb + tbf]++;
+	    }
+	}
+    }
+
+    /** Moves all devices in use to the next age classes */
+    private void ageDevices() {
+	int nl = dieHazard.length, nb = breakHazard.length;
+	int[] older = new int[inUse.length];
+	for(int i=0; i<nl; i++) {
+	    for(int j=0; j<nb; j++) {
+		older[Math.min(i+1, nl-1)*nb + Math.min(j+1, nb-1)] += inUse[i*nb + j];
+	    }
+	}
+	inUse = older;
+    }
+
+    /** Tabulates the hazard rate of the service time, by drawing a
+	large sample from serviceTimeDistribution */
+    private void tabulateServiceTime() {
+	final int N = 100000;
+	int[] count = new int[1];
+	for(int j=0; j<N; j++) {
+	    // the treatment ends on day a iff a < T <= a+1
+	    double t = serviceTimeDistribution.nextDouble();
+	    int a = (t<=0)? 0: (int)Math.ceil(t) - 1;
+	    if (a >= count.length) count = Arrays.copyOf(count, Math.max(a+1, 2*count.length));
+	    count[a]++;
+	}
+	int len = count.length;
+	while(len>1 && count[len-1]==0) len--;
+	hazard = new double[len];
+	survival = new double[len];
+	int left = N;
+	for(int a=0; a<len; a++) {
+	    survival[a] = (double)left/N;
+	    hazard[a] = (left==0)? 1: (double)count[a]/left;
+	    left -= count[a];
+	}
+	hazard[len-1] = 1;
+	inTreatment = new int[len];
+    }
+
+    /** The number of patients under treatment */
+    public double getDelayed() {
+	return cohortMode? treatedCount: super.getDelayed();
+    }
+
+    private Batch mkEE(int n, double now) {
+	return ((Batch)eeHEP.getPrototype()).mkNewLot(n, now);
+    }
+
+    /** The daily step in the cohort mode. First, the treatment of
+	all patients advances by one day: some devices die or break,
+	and their patients go back to the waiting queue; some of the
+	other patients are cured, and return their devices. Then, as
+	many waiting patients as possible are fitted with devices.
+     */
+    private void cohortStep(double now) {
+	syncDevices();
+	int nb = breakHazard.length;
+	int died = 0, broke = 0;
+	for(int m=0; m<inUse.length; m++) {
+	    int k = inUse[m];
+	    if (k==0) continue;
+	    int d = DistributionUtil.nextBinomial(binomial, k, dieHazard[m / nb]);
+	    int b = DistributionUtil.nextBinomial(binomial, k-d, breakHazard[m % nb]);
+	    inUse[m] -= d + b;
+	    died += d;
+	    broke += b;
+	    // a repaired device starts a new time between failures
+	    addDevices(inRepair, b, m / nb, 0, false);
+	}
+	if (died>0) {
+	    everEeDied += died;
+	    if (!deadEESink.accept(null, mkEE(died, now), died, died)) throw new AssertionError();
+	}
+	// each device has its own repair time
+	for(int j=0; j<broke; j++) {
+	    if (!repairPool.accept(null, mkEE(1, now), 1, 1)) throw new AssertionError();
+	}
+	everEeBroke += broke;
+	inRepairCount += broke;
+
+	// the patients whose devices have died or broken
+	int[] lost = drawAtRandom(inTreatment, treatedCount, died + broke);
+	treatedCount -= died + broke;
+	everAnnoyed += died + broke;
+
+	int cured = 0;
+	for(int a=inTreatment.length-1; a>=0; a--) {
+	    wpq.addCohort(now, Math.min(a+1, inTreatment.length-1), lost[a]);
+	    int k = inTreatment[a];
+	    if (k==0) continue;
+	    inTreatment[a] = 0;
+	    int c = DistributionUtil.nextBinomial(binomial, k, hazard[a]);
+	    if (k>c) inTreatment[a+1] += k - c;
+	    cured += c;
+	}
+
+	if (cured>0) {
+	    everCured += cured;
+	    int[] returned = drawAtRandom(inUse, treatedCount, cured);
+	    for(int m=0; m<returned.length; m++) addDevices(idle, returned[m], m / nb, m % nb, false);
+	    idleCount += cured;
+	    treatedCount -= cured;
+	    if (!eeHEP.accept(eeReturner, mkEE(cured, now), cured, cured)) throw new AssertionError();
+	}
+
+	if (++cohortDays % ageClassDays == 0) ageDevices();
+
+	long n = (long)Math.min(wpq.getAvailable(), Math.min(eeHEP.getContentAmount(), dsHEP.getContentAmount()));
+	if (n<=0) return;
+	if (dsHEP.consumeSome(n) != n) throw new AssertionError("Why is dsHEP short?!");
+	if (eeHEP.consumeSome(n) != n) throw new AssertionError("Why is eeHEP short?!");
+	startUsing(n, true);
+	for(WaitingPatientQueue.Cohort c: wpq.takeCohorts(n)) {
+	    inTreatment[c.treated] += c.n;
+	    treatedCount += c.n;
+	    everAccepted += c.n;
+	    if (!Double.isNaN(c.since)) waitingSketch.add(now - c.since, c.n);
+	}
+    }
+
     /* This method has a dual role. First, since it's an
        (auto-scheduled) delay, it's automatically called every time
        when a patient is released from treatment (at the end of his
@@ -140,6 +477,14 @@ public class ServicedPatientPool extends Delay implements Named, Reporting {
 
      */
     public void step(SimState state) {
+	if (cohortMode) {
+	    double now = state.schedule.getTime();
+	    if (Math.round(now) == now) {
+		cohortStep(now);
+		dailyChart();
+	    }
+	    return;
+	}
 	super.step(state); 
 
 	// this part really only needs to be done daily... but it's ok to
@@ -158,7 +503,19 @@ public class ServicedPatientPool extends Delay implements Named, Reporting {
 
     
 
-    int everAccepted=0;
+    long everAccepted=0;
+
+    /** The distribution of the times patients have spent in the
+	waiting queue before being accepted into treatment. (A patient
+	whose treatment was interrupted and who had to wait again
+	contributes one value for each wait.) */
+    final QuantileSketch waitingSketch = new QuantileSketch();
+
+    /** The distribution of waiting times so far. The sketches from
+	several runs can be merged with QuantileSketch.merge() */
+    public QuantileSketch getWaitingSketch() {
+	return waitingSketch;
+    }
 
     /** Accepts a patient into treatment, if EE and DS units are available.
 	@param amount a Patient object
@@ -187,6 +544,8 @@ public class ServicedPatientPool extends Delay implements Named, Reporting {
 	  
 	  if (!z) throw new AssertionError("Delay did not accept");
 	  everAccepted++;
+	  double since = p.getPatientInfo().waitingSince;
+	  if (!Double.isNaN(since)) waitingSketch.add(now - since);
 
 	  //System.out.println("SPP.accept: everAccepted=" + everAccepted +"; delay has " + getDelayed()); //super.report());
 	  
@@ -216,6 +575,7 @@ public class ServicedPatientPool extends Delay implements Named, Reporting {
 	    ". EE destroyed=" + (long)everEeDied +
 	    ", sent to repair=" + (long)everEeBroke;
 	s += ". EE still in repair pool="+ (long)repairPool.getDelayed();
+	s += ". Waiting time before treatment: " + waitingSketch;
 
 	s += "]";
 	return wrap(s);
@@ -252,6 +612,17 @@ public class ServicedPatientPool extends Delay implements Named, Reporting {
 	for(int ago=0; ago<initDepth; ago++) {
 	    int n = wpq.computeDaysArrivals();
 
+	    if (cohortMode) {
+		// the patients whose treatment takes more than ago days
+		if (ago >= survival.length) continue;
+		int stillIn = DistributionUtil.nextBinomial(binomial, n, survival[ago]);
+		inTreatment[ago] += stillIn;
+		treatedCount += stillIn;
+		startUsing(stillIn, false);
+		initPop += stillIn;
+		continue;
+	    }
+
 	    for(int i=0; i<n; i++) {
 		Batch eeb = ((Batch)eeHEP.getPrototype()).mkNewLot(1, now);
 		EE ee = new EE(eeb, true);
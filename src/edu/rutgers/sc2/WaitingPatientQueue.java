@@ -1,6 +1,6 @@
 package  edu.rutgers.sc2;
 
-import java.util.Vector;
+import java.util.*;
 import java.io.*;
 
 import sim.engine.*;
@@ -14,7 +14,14 @@ import edu.rutgers.supply.*;
 import edu.rutgers.supply.Disruptions.Disruption;
 
 /** Patients arrive to this queue randomly "from the street", and wait
-    here for the EE and DS to be provided to them */
+    here for the EE and DS to be provided to them.
+
+    <p>Normally, each waiting patient is a Patient entity stored in
+    this Queue. In the cohort mode (see ServicedPatientPool), the
+    waiting patients are instead represented by counted groups
+    (Cohort objects), each one consisting of the patients who have
+    entered the queue on the same day, and have received the same
+    number of days of treatment before that. */
 public class WaitingPatientQueue extends sim.des.Queue implements Named, Reporting {
     AbstractDiscreteDistribution dailyArrivalDistribution;
     
@@ -32,6 +39,68 @@ public class WaitingPatientQueue extends sim.des.Queue implements Named, Reporti
     }
 
 
+    /** A group of waiting patients who entered the queue at the same
+	time, and have had the same amount of treatment so far */
+    static class Cohort {
+	/** When the patients entered the queue */
+	final double since;
+	/** The number of full days of treatment the patients have
+	    received before (0 for new patients) */
+	final int treated;
+	int n;
+	Cohort(double _since, int _treated, int _n) {
+	    since = _since;
+	    treated = _treated;
+	    n = _n;
+	}
+    }
+
+    /** The waiting patients in the cohort mode, in the order of
+	arrival; null in the normal mode */
+    private ArrayDeque<Cohort> cohorts = null;
+    /** The total number of patients in all cohorts */
+    private long cohortCount = 0;
+
+    /** Switches this queue to the cohort mode. Must be called before
+	any patients have arrived */
+    void useCohorts() {
+	if (super.getAvailable()>0) throw new IllegalArgumentException(getName() + " already has patients; cannot switch to the cohort mode");
+	cohorts = new ArrayDeque<>();
+    }
+
+    /** Adds a cohort of patients at the end of the queue (cohort mode only) */
+    void addCohort(double since, int treated, int n) {
+	if (n<=0) return;
+	cohorts.addLast(new Cohort(since, treated, n));
+	cohortCount += n;
+    }
+
+    /** Removes up to n patients from the head of the queue (cohort
+	mode only).
+	@return The cohorts (or parts of cohorts) removed, in the
+	order of arrival */
+    Vector<Cohort> takeCohorts(long n) {
+	Vector<Cohort> v = new Vector<>();
+	while(n>0 && !cohorts.isEmpty()) {
+	    Cohort c = cohorts.getFirst();
+	    if (c.n <= n) {
+		cohorts.removeFirst();
+		v.add(c);
+	    } else {
+		v.add(new Cohort(c.since, c.treated, (int)n));
+		c.n -= n;
+	    }
+	    n -= v.lastElement().n;
+	    cohortCount -= v.lastElement().n;
+	}
+	return v;
+    }
+
+    /** The number of waiting patients */
+    public double getAvailable() {
+	return (cohorts!=null)? cohortCount: super.getAvailable();
+    }
+
     int computeDaysArrivals() {
 	return dailyArrivalDistribution.nextInt();
     }
@@ -47,6 +116,10 @@ public class WaitingPatientQueue extends sim.des.Queue implements Named, Reporti
 
 
 	int todaysArrivals =  computeDaysArrivals();
+	if (cohorts!=null) {
+	    addCohort(state.schedule.getTime(), 0, todaysArrivals);
+	    return;
+	}
 	for(int j=0; j<todaysArrivals; j++) {
 	    Patient p = new Patient();
 	    Provider provider = null;  // why do we need it?		
@@ -55,6 +128,16 @@ public class WaitingPatientQueue extends sim.des.Queue implements Named, Reporti
 	}
     }
 
+    /** Notes the time when the patient enters the queue (whether
+	he is new, or is coming back because his treatment was
+	interrupted), so that his waiting time can be measured */
+    public boolean accept(Provider provider, Resource amount, double atLeast, double atMost) {
+	if (amount instanceof Patient) {
+	    ((Patient)amount).getPatientInfo().waitingSince = state.schedule.getTime();
+	}
+	return super.accept(provider, amount, atLeast, atMost);
+    }
+
       public String report() {	
 	  String s = "[" + getName();
 	  s += "; waiting patients=" + (long)getAvailable();
@@ -10,6 +10,7 @@ import sim.util.*;
 import sim.util.distribution.*;
 import sim.des.*;
 
+import edu.rutgers.util.SummableDistribution;
 //import edu.rutgers.util.*;
 //import edu.rutgers.supply.Disruptions.Disruption;
 
@@ -34,12 +35,11 @@ public class CombinationDistribution extends AbstractContinuousDistribution {
 
     public void setN(int _n) { n = _n; }
     
+    /** Draws the sum, with a shortcut if the underlying distribution
+	is a SummableDistribution */
     public double nextDouble() {
-	double sum=0;
-	for(int j=0; j<n; j++) {
-	    sum += d0.nextDouble();
-	}
-	return sum;
+	if (n<=0) return 0;
+	return SummableDistribution.nextSum(d0, n);
     }
 
     public int nextInt() {
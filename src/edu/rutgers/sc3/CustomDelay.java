@@ -27,6 +27,12 @@ public class CustomDelay extends Delay
 
     public CustomDelay(SimState state, Resource typicalBatch) {
 	super(state, typicalBatch);
+	Telemetry tm = Telemetry.getCurrent();
+	if (tm!=null) {
+	    tm.addGauge(this, "delayed", new Telemetry.Gauge() {
+		    public double value() { return getSize(); }
+		});
+	}
     }
 
 
@@ -45,6 +51,6 @@ public class CustomDelay extends Delay
 	
 	boolean z = super.accept( provider, r, atLeast, atMost);
 	if (!z) throw new AssertionError("Unexpected rejection of accept ny " + getName());
-	return z;
+	return NodeProfiler.countOffer(this, z);
     }
 }
@@ -36,7 +36,7 @@ import edu.rutgers.util.*;
 
 */
 
-class DelayRules {
+class DelayRules implements java.io.Serializable {
 
     /** For a fixed-time delay */
     DelayRules(double fixed) {
@@ -81,14 +81,12 @@ class DelayRules {
     /** If true, the delayDistribution contains unit cost, rather than batch cost */
     private final boolean unit;
 
-    /** Without disruptions */
+    /** Without disruptions. In the unit mode, the sum of n values is
+	drawn via SummableDistribution, which, for the distributions
+	that allow it, takes a single draw rather than n draws. */
     private double basicComputeDelayTime(long n) {
-	double sum=0;
 	if (!unit) n = 1;
-	for(int j=0; j<n; j++) {
-	    sum += myDelayDistribution.nextDouble();
-	}
-	return Math.abs(sum);
+	return Math.abs(SummableDistribution.nextSum(myDelayDistribution, n));
     }
 
     double drawDelayTime(double now, long amt) {
@@ -43,16 +43,23 @@ public class Demo extends SimState {
     public String version = "1.010";
 
     
-    /** Set this to true to print a lot of stuff */
-    static boolean verbose=false;
-
-    /** Set this to true to print less stuff, and turn off all interactive things */
-    static boolean quiet=false;
-    static public void setQuiet(boolean _quiet) { quiet = _quiet; }
-
-    /** 1 means just have Small; 2 means have both Small and Large */
+    /** If true, print a lot of stuff. The flag is kept in the current
+	RunContext, so that concurrent runs can have different verbosity */
+    static boolean verbose() { return RunContext.get().verbose; }
+    static public void setVerbose(boolean _verbose) { RunContext.get().verbose = _verbose; }
+
+    /** If true, print less stuff, and turn off all interactive things */
+    static boolean quiet() { return RunContext.get().quiet; }
+    static public void setQuiet(boolean _quiet) { RunContext.get().quiet = _quiet; }
+
+    /** 1 means just have Small; 2 means have both Small and Large.
+	This is the value for Demo objects to be created; each Demo
+	copies it at construction time into its own field (m) */
     static int M = 2;
     static public void setM(int _M) { M = _M; }
+
+    /** The value of M in effect for this run */
+    private final int m = M;
     
 
     
@@ -67,13 +74,141 @@ public class Demo extends SimState {
     }
 
     
-    Vector<Disruption> hasDisruptionToday(Disruptions.Type type, String unit) {
-	if (disruptions == null) return new Vector<Disruption>();
+    java.util.List<Disruption> hasDisruptionToday(Disruptions.Type type, String unit) {
+	if (disruptions == null) return Collections.emptyList();
 	double time = schedule.getTime();
 	return disruptions.hasToday(type, unit, time);
     }
 
 
+    /** Makes a snapshot of this model in its current state (e.g. at
+	the end of a warm-up period), from which several disruption
+	scenarios can be branched with Snapshot.restore() and
+	branchDisruptions(). Profiling does not survive a restore, so
+	it cannot be used with snapshots.
+    */
+    public Snapshot snapshot() throws IOException {
+	if (profiler!=null) throw new IllegalArgumentException("Cannot snapshot a profiled run");
+	return Snapshot.take(this);
+    }
+
+    /** Sets the disruption scenario for a model restored from a
+	snapshot, which will then be run without calling start(). All
+	disruptions must be in the future, since the branch cannot
+	undo the days that have already been simulated.
+    */
+    public void branchDisruptions(Disruptions _disruptions) {
+	double now = schedule.getTime();
+	if (_disruptions!=null && _disruptions.earliestTime() <= now) throw new IllegalArgumentException("Cannot branch at t=" + now + ", because the scenario has disruptions starting at t=" + _disruptions.earliestTime());
+	disruptions = _disruptions;
+	if (eventDrivenDisruptions && disruptions!=null) {
+	    disruptions.schedule(schedule, disruptionListeners);
+	}
+    }
+
+    /** If true, disruptions are delivered to the affected elements by
+	a DisruptionDispatcher, rather than polled daily by each element */
+    private boolean eventDrivenDisruptions = false;
+    public void setEventDrivenDisruptions(boolean x) { eventDrivenDisruptions = x; }
+    public boolean getEventDrivenDisruptions() { return eventDrivenDisruptions; }
+
+    /** Maps unit names to the elements that want to be notified of
+	disruptions affecting these units (in the event-driven mode) */
+    private HashMap<String,DisruptionListener> disruptionListeners = new HashMap<>();
+    void addDisruptionListener(String unitName, DisruptionListener listener) {
+	if (disruptionListeners.put(unitName, listener)!=null) throw new IllegalArgumentException("Attempt to add a duplicate disruption listener for " + unitName);
+    }
+
+    /** If true, the time and allocation of each node's step(), and
+	the offers handled by each Receiver, are recorded by a
+	NodeProfiler, and reported at the end of the run */
+    private boolean profile = false;
+    public void setProfile(boolean x) { profile = x; }
+    public boolean getProfile() { return profile; }
+    private transient NodeProfiler profiler = null;
+
+    /** If positive, the lot counts, content, delayed nodes and
+	outstanding orders of all buffers, delays and order books are
+	sampled every telemetryInterval days by a Telemetry object,
+	and dumped into telemetry.csv at the end of the run */
+    private double telemetryInterval = 0;
+    public void setTelemetryInterval(double x) { telemetryInterval = x; }
+    public double getTelemetryInterval() { return telemetryInterval; }
+    /** Alarms (in the "regex>threshold" form) that abort the run if
+	any matching telemetry gauge exceeds the threshold. They only
+	work if telemetryInterval is positive. */
+    Vector<String> telemetryAlarms = new Vector<>();
+    private Telemetry telemetry = null;
+    /** @return The Telemetry object of the current (or most recent)
+	run, or null if there is none */
+    public Telemetry getTelemetry() { return telemetry; }
+
+    /** Set by finish(), so that it is only done once, even if the
+	run has been killed (which calls finish() as well) */
+    private boolean finished = false;
+
+    /** If true, each supply chain element draws its random numbers
+	from its own stream, derived from the seed and the element's
+	name (see RandomStreams), rather than from the shared
+	SimState.random. This gives common random numbers across
+	disruption scenarios run with the same seed. */
+    private boolean independentStreams = false;
+    public void setIndependentStreams(boolean x) { independentStreams = x; }
+    public boolean getIndependentStreams() { return independentStreams; }
+    /** The random number streams for the current run; set in start() */
+    private RandomStreams streams;
+    /** @return The random number streams of the model to which
+	the supply chain elements being built belong. If the model is
+	not a Demo (e.g. a bare SimState in a benchmark), or its
+	start() has not been called yet, all elements share
+	state.random. */
+    static RandomStreams streams(SimState state) {
+	RandomStreams s = (state instanceof Demo)? ((Demo)state).streams: null;
+	return (s!=null)? s: RandomStreams.shared(state.random);
+    }
+
+    /** Memoizes the assessments of optimizer runs; null if this is
+	turned off (see EvaluationCache.getShared()) */
+    private transient EvaluationCache evalCache = EvaluationCache.getShared();
+    /** The seed given to the constructor. It is a part of the
+	evalCache key; this assumes that the run is a function of the
+	key, so when the cache is on, start() re-seeds the random
+	number generator with this seed (even if the same Demo object
+	is started again, or its generator has been used in between). */
+    private long runSeed;
+    /** The values most recently passed to setOptimizationParameters() */
+    private double[] optimizationParameters = null;
+    /** The evalCache key of the current run, or null if it is not cached */
+    private String evalKey = null;
+    /** If not null, the assessment of the current run has been found
+	in evalCache, and the simulation is not actually run */
+    private double[] cachedAssessment = null;
+
+    /** Should be called by each subclass' setOptimizationParameters(),
+	so that the parameters become a part of the evalCache key */
+    protected void noteOptimizationParameters(double[] parameterValues) {
+	optimizationParameters = parameterValues.clone();
+    }
+
+    /** The waiting-time metrics (see EndCustomer.Stats.get()) used as
+	the objectives, in order, by the subclasses that compute their
+	assessment from the waiting-time stats (DemoEvoMitigations).
+	If the optimizer asks for fewer objectives than listed here,
+	only the first ones are used. Set by the -objectives option. */
+    String[] objectives = {"avg", "p90", "p99"};
+    /** Sets the waiting-time metrics to be used as the objectives,
+	e.g. setObjectives("p90") to optimize for the 90th percentile
+	of the waiting time instead of the average */
+    public void setObjectives(String... x) { objectives = x.clone(); }
+    public String[] getObjectives() { return objectives.clone(); }
+
+    /** Anything other than the optimization parameters, config and
+	disruptions that affects the assessment (e.g. the choice of
+	objectives), to be included in the evalCache key */
+    protected String evalCacheTag() {
+	return getClass().getName();
+    }
+
     /** Used to look up supply chain elements by name */
     private HashMap<String,Steppable> addedNodes = new HashMap<>();
     Steppable lookupNode(String name) { return addedNodes.get(name); }
@@ -88,7 +223,9 @@ public class Demo extends SimState {
 	    if (addedNodes.put(name, z)!=null) throw new IllegalArgumentException("Attempt to add duplicate node named " + name);
 	}
 	if (z instanceof Reporting) reporters.add((Reporting)z);
-	IterativeRepeat ir =	schedule.scheduleRepeating(z, ordering++, 1.0);
+	Steppable s = (profiler!=null && z instanceof Named)?
+	    profiler.wrap(((Named)z).getName(), z): z;
+	IterativeRepeat ir =	schedule.scheduleRepeating(s, ordering++, 1.0);
     }
 
     void addFiller(String text) {
@@ -97,21 +234,53 @@ public class Demo extends SimState {
     
     public Demo(long seed)    {
 	super(seed);
+	runSeed = seed;
 	Disruptions.setSc2BackwardCompatible(false);
 
-	if (verbose) System.out.println("sc3.Demo()");
+	if (verbose()) System.out.println("sc3.Demo()");
     }
 
   /** Here, the supply network elements are added to the Demo object */
     public void start(){
 	super.start();
-	if (!quiet) System.out.println("Demo.start");
-	if (!quiet) System.out.println("Disruptions=" + disruptions);
+	// In case this Demo object is started again (e.g. from the GUI)
+	addedNodes.clear();
+	reporters.clear();
+	disruptionListeners.clear();
+	ordering = 0;
+	profiler = profile? new NodeProfiler(): null;
+	NodeProfiler.setCurrent(profiler);
+	telemetry = (telemetryInterval>0)? new Telemetry(telemetryInterval): null;
+	if (telemetry!=null) {
+	    for(String spec: telemetryAlarms) telemetry.addAlarm(spec);
+	}
+	Telemetry.setCurrent(telemetry);
+	finished = false;
+	if (evalCache!=null) random.setSeed(runSeed);
+	streams = independentStreams? RandomStreams.independent(runSeed): RandomStreams.shared(random);
+	evalKey = null;
+	cachedAssessment = null;
+	if (evalCache!=null && optimizationParameters!=null) {
+	    evalKey = evalCache.key(optimizationParameters, config, disruptions, runSeed, evalCacheTag() + (independentStreams? ";streams": ""));
+	    cachedAssessment = evalCache.get(evalKey);
+	    if (cachedAssessment!=null) {
+		// Nothing is scheduled, so the run ends right away
+		if (!quiet()) System.out.println("Found in " + evalCache + "; not running the simulation");
+		return;
+	    }
+	}
+	if (!quiet()) System.out.println("Demo.start");
+	if (!quiet()) System.out.println("Disruptions=" + disruptions);
 	initSupplyChain();
+	// sampled after all nodes have done their daily work
+	if (telemetry!=null) schedule.scheduleRepeating(telemetry, ordering++, telemetryInterval);
+	if (eventDrivenDisruptions && disruptions!=null) {
+	    disruptions.schedule(schedule, disruptionListeners);
+	}
 	final int CENSUS_INTERVAL=360;
-	if (verbose) schedule.scheduleRepeating(new Reporter(), CENSUS_INTERVAL);
-	if (!quiet) System.out.println("SC3 DES/MASON simulation, ver=" + version +", config=" + config.readFrom);
-	if (verbose) doReport("Start");
+	if (verbose()) schedule.scheduleRepeating(new Reporter(), CENSUS_INTERVAL);
+	if (!quiet()) System.out.println("SC3 DES/MASON simulation, ver=" + version +", config=" + config.readFrom);
+	if (verbose()) doReport("Start");
     }
 
     //-- Not needed: implemented as SS source
@@ -184,7 +353,7 @@ public class Demo extends SimState {
 	    add(prepregProd);
 
 
-	    for(int j=M-1; j>=0; j--) { 
+	    for(int j=m-1; j>=0; j--) { 
 	    
 		substrateProd[j] = new Production(this,
 						  substrateBatch[j].getUnderlyingName() + "Prod",
@@ -216,7 +385,7 @@ public class Demo extends SimState {
 	   
  	    addFiller("   --- ARRAY ASSEMBLY ---");
 
-	    for(int j=M-1; j>=0; j--) {
+	    for(int j=m-1; j>=0; j--) {
 		Batch out = arrayBatch[j];
 		String name = out.getUnderlyingName() + "Assembly";
 		Resource[] inputs = {substrateBatch[0],substrateBatch[1], cellBatch, adhesiveBatch, diodeBatch};
@@ -231,7 +400,7 @@ public class Demo extends SimState {
 	    //-- End customers
 	    addFiller("   --- END CUSTOMER ---");
 
-	    for(int j=M-1; j>=0; j--) {
+	    for(int j=m-1; j>=0; j--) {
 		endCustomer[j] = new EndCustomer(this, 
 						 arrayBatch[j].getUnderlyingName() + "Customer",
 						 config,
@@ -440,11 +609,45 @@ public class Demo extends SimState {
     }
 
     public void	finish() {
-	if (!quiet) doReport("Finish");
-	if (verbose) System.out.println("Closing logs");
+	if (finished) return;
+	finished = true;
+	if (profiler!=null) {
+	    if (cachedAssessment==null) System.out.println(profiler.report());
+	    // so that countOffer() goes back to its fast path
+	    NodeProfiler.setCurrent(null);
+	}
+	// so that getCurrent() goes back to its fast path, and later
+	// runs in this context don't register with this Telemetry
+	if (telemetry!=null) Telemetry.setCurrent(null);
+	if (cachedAssessment!=null) return;
+	if (!quiet()) doReport("Finish");
+	if (telemetry!=null) {
+	    telemetry.dump();
+	    if (telemetry.getAlarm()!=null) System.out.println(telemetry.getAlarm());
+	}
+	if (verbose()) System.out.println("Closing logs");
 	Charter.closeAll();
     }
     
+    /** Returns the assessment of the run, which is computed by
+	computeAssessment(), or taken from the evaluation cache, if the
+	run has been found there. */
+    public double[] assess(int numObjectives) {
+	if (cachedAssessment!=null) {
+	    if (cachedAssessment.length < numObjectives) throw new IllegalArgumentException("Asked for " + numObjectives + " objectives, but the cached assessment only has " + cachedAssessment.length);
+	    return Arrays.copyOf(cachedAssessment, numObjectives);
+	}
+	double[] a = computeAssessment(numObjectives);
+	if (evalKey!=null) evalCache.put(evalKey, a);
+	return a;
+    }
+
+    /** Computes the assessment of the run that has just been
+	completed. The optimizer-facing subclasses override this. */
+    protected double[] computeAssessment(int numObjectives) {
+	return super.assess(numObjectives);
+    }
+
     static class Reporter implements Steppable {
 	public void step(SimState state) {
 	    ((Demo)state).doReport("Report at t=" + state.schedule.getTime());
@@ -486,7 +689,7 @@ public class Demo extends SimState {
 	
 	if (awf.cnt>0) 	w.add( " for "+awf.cnt+" filled orders " + awf.avgT   + " days");
 	if (awu.cnt>0) 	w.add( " for "+awu.cnt+" unfilled orders " + awu.avgT  + " days so far");     
-	if (aw.cnt>0) 	w.add( " for all "+aw.cnt+" orders " + aw.avgT     + " days so far");
+	if (aw.cnt>0) 	w.add( " for all "+aw.cnt+" orders " + aw.avgT     + " days so far (" + aw.sketch + ")");
 	
 	String s = 
 	    (w.size()>0) ? "All customers: Avg waiting time" + String.join(",", w) + ".":
@@ -497,7 +700,9 @@ public class Demo extends SimState {
 	return String.join("\n", v);
     }
 
-    /** Computes wating-time statistics for a complete run *
+    /** Computes wating-time statistics for a complete run. The
+	waiting-time distribution sketches of all customers are merged
+	as well, so that quantiles for the entire run can be obtained.
        @return {statsForFilled, statsForUnfilled, statsForAll }
      */
     public EndCustomer.Stats[] getWaitingStats() {
@@ -506,7 +711,7 @@ public class Demo extends SimState {
 	    results[i] = new  EndCustomer.Stats();
 	}
 	
-	for(int j=M-1; j>=0; j--) {
+	for(int j=m-1; j>=0; j--) {
 	    EndCustomer ec = endCustomer[j];
 	    results[0].add(ec.avgWaitingFilled());
 	    results[1].add(ec.avgWaitingUnfilled());
@@ -520,7 +725,7 @@ public class Demo extends SimState {
 	into its CSV file (Charter)
     */
     void plotWaitingStats() {
-	for(int j=M-1; j>=0; j--) {
+	for(int j=m-1; j>=0; j--) {
 	    EndCustomer ec = endCustomer[j];
 	    //System.out.println("DEBUG: Printing waiting stats for " + ec.getName());
 	    ec.plotAllOrders();
@@ -541,6 +746,19 @@ public class Demo extends SimState {
 	    interpreted by the constructor (such as -config XXX) will be put here. */
 	public final String[] argvStripped;
 
+	/** Set by the -disruptionEvents option */
+	public boolean eventDrivenDisruptions = false;
+	/** Set by the -profile option */
+	public boolean profile = false;
+	/** Set by the -crn option */
+	public boolean independentStreams = false;
+	/** Set by the -telemetry option */
+	public double telemetryInterval = 0;
+	/** Set by the -telemetryAlarm option(s) */
+	public Vector<String> telemetryAlarms = new Vector<>();
+	/** Set by the -objectives option; null means the default */
+	public String[] objectives = null;
+
 	/** For use in RepeatTest */
 	public int repeat=1;
 	public boolean repeatSet = false;
@@ -561,13 +779,31 @@ public class Demo extends SimState {
 		boolean keep=false;
 		String a = argv[j];
 		if (a.equals("-verbose")) {
-		    verbose = true;
+		    setVerbose(true);
 		} else 	if (a.equals("-quiet")) {
-		    quiet = true;
+		    setQuiet(true);
 		} else if (a.equals("-config") && j+1<argv.length) {
 		    confPath= argv[++j];
 		} else if (a.equals("-disrupt") && j+1<argv.length) {
 		    disruptPath= argv[++j];
+		} else if (a.equals("-disruptionEvents")) {
+		    eventDrivenDisruptions = true;
+		} else if (a.equals("-profile")) {
+		    profile = true;
+		} else if (a.equals("-crn")) {
+		    // common random numbers: per-node random streams
+		    independentStreams = true;
+		} else if (a.equals("-telemetry") && j+1<argv.length) {
+		    telemetryInterval = Double.parseDouble(argv[++j]);
+		} else if (a.equals("-telemetryAlarm") && j+1<argv.length) {
+		    // e.g. "-telemetryAlarm '.*\.lots>10000'"
+		    telemetryAlarms.add(argv[++j]);
+		} else if (a.equals("-objectives") && j+1<argv.length) {
+		    // e.g. "-objectives avg,p90"
+		    objectives = argv[++j].split(",");
+		} else if (a.equals("-chartSink") && j+1<argv.length) {
+		    // e.g. "-chartSink memory:EndCustomer.*"
+		    Charter.addSinkRule(argv[++j]);
 		} else if (a.equals("-charts") && j+1<argv.length) {
 		    chartsPath= argv[++j];
 		} else if (a.equals("-repeat") && j+1<argv.length) {
@@ -611,6 +847,12 @@ public class Demo extends SimState {
 	    //demo.disruptions.add( Disruptions.Type.ShipmentLoss, "RawMaterialSupplier", 40, 30);
 	    demo.config = config0;
 	    demo.disruptions = disruptions0;
+	    demo.eventDrivenDisruptions = eventDrivenDisruptions;
+	    demo.profile = profile;
+	    demo.independentStreams = independentStreams;
+	    demo.telemetryInterval = telemetryInterval;
+	    demo.telemetryAlarms = telemetryAlarms;
+	    if (objectives!=null) demo.setObjectives(objectives);
 	}
 	
 	public SimState	newInstance(long seed, java.lang.String[] args) {
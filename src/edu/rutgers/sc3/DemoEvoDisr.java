@@ -48,8 +48,8 @@ public class DemoEvoDisr extends Demo {
     	
 	super(seed);
 	
-	Demo.quiet = false;
-	Demo.verbose = false;
+	Demo.setQuiet(false);
+	Demo.setVerbose(false);
 	
 	try {
 		mySetUp();
@@ -76,7 +76,8 @@ public class DemoEvoDisr extends Demo {
         //String confPath = "config/sc3.csv";
 
         File f= new File(confPath);
-	    this.config  = Config.readConfig(f);
+	    // Parsed once per JVM, rather than once per evaluation
+	    this.config  = Config.readConfigCached(f);
 	    
 	    //for testing
 	    //double[] parameterValues = new double[92];
@@ -121,7 +122,7 @@ public class DemoEvoDisr extends Demo {
 	}	    
     
     
-    public double[] assess(int numObjectives)
+    protected double[] computeAssessment(int numObjectives)
     {
     
     double[] assessment = new double[numObjectives];
@@ -140,6 +141,7 @@ public class DemoEvoDisr extends Demo {
     //Raj CMAES methods
     //The optimizer uses this to input 
     public void setOptimizationParameters(double[] parameterValues) {
+	noteOptimizationParameters(parameterValues);
     	
 
         int time=100;
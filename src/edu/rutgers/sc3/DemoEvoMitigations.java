@@ -48,8 +48,8 @@ public class DemoEvoMitigations extends Demo {
     	
 	super(seed);
 	
-	Demo.quiet = true;
-	Demo.verbose = false;
+	Demo.setQuiet(true);
+	Demo.setVerbose(false);
 	
 	try {
 		mySetUp();
@@ -76,7 +76,8 @@ public class DemoEvoMitigations extends Demo {
         //String confPath = "config/sc3.csv";
 
         File f= new File(confPath);
-	    this.config  = Config.readConfig(f);
+	    // Parsed once per JVM, rather than once per evaluation
+	    this.config  = Config.readConfigCached(f);
 	    
 	    String disruptPath = "../optimize_output/Sept4/Top5_Disr_Best_Disruption.csv";
 
@@ -128,7 +129,11 @@ public class DemoEvoMitigations extends Demo {
 	}	    
     
     
-    public double[] assess(int numObjectives)
+    protected String evalCacheTag() {
+	return super.evalCacheTag() + ":" + String.join(",", objectives);
+    }
+    
+    protected double[] computeAssessment(int numObjectives)
     {
     
     double[] assessment = new double[numObjectives];
@@ -137,8 +142,12 @@ public class DemoEvoMitigations extends Demo {
 	EndCustomer.Stats[] stats = this.getWaitingStats();
     EndCustomer.Stats awf=stats[0], awu=stats[1], aw = stats[2];
        	
+    if (numObjectives > objectives.length) throw new IllegalArgumentException("Asked for " + numObjectives + " objectives, but only " + objectives.length + " are defined");
     
-    assessment[0] = -1.0 * aw.avgT;  //avg wait time from all orders
+    for(int j=0; j<numObjectives; j++) {
+	// wait times over all orders (avg or quantiles), to be minimized
+	assessment[j] = -1.0 * aw.get(objectives[j]);
+    }
 
     
     return assessment;
@@ -147,6 +156,7 @@ public class DemoEvoMitigations extends Demo {
     //Raj CMAES methods
     //The optimizer uses this to input 
     public void setOptimizationParameters(double[] parameterValues) {
+	noteOptimizationParameters(parameterValues);
     
 
 
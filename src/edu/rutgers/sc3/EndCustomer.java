@@ -44,6 +44,8 @@ public class EndCustomer extends MSink implements Reporting {
     private final double orderProbability;
     /** The order size is drawn from this probability */
     private final AbstractDistribution orderSizeDistribution;
+    /** Decides whether an order comes in on a given day */
+    private final ec.util.MersenneTwisterFast random;
 
     
     /** Similar to typical, but with storage. In this case, it's batches of packaged drug  */
@@ -65,7 +67,16 @@ public class EndCustomer extends MSink implements Reporting {
 	if (para==null) throw new IllegalInputException("Config file has no data for unti=" + name);
 	prototype = resource;
 	orderProbability = para.getDouble("orderProbability");
-	orderSizeDistribution = para.getDistribution("orderSize",state.random);	
+	orderSizeDistribution = para.getDistribution("orderSize", Demo.streams(state));	
+	random = Demo.streams(state).get(name);
+	keepOrders = para.getBoolean("keepOrders", true);
+	Telemetry tm = Telemetry.getCurrent();
+	if (tm!=null) {
+	    // onOrder is only created in linkUp()
+	    tm.addGauge(this, "onOrder", new Telemetry.Gauge() {
+		    public double value() { return onOrder==null? 0: onOrder.size(); }
+		});
+	}
     }
 
     void linkUp(HashMap<String,Steppable> knownPools) throws IllegalInputException {
@@ -103,16 +114,68 @@ public class EndCustomer extends MSink implements Reporting {
     //    private double  totalUnsatisfiedDemand = 0;
 
 
-    /** Orders are moved here once they have been fully filled */
+    /** If true (the default), all filled orders are kept in
+	filledOrders, and are charted at the end of the run.  If false
+	(set with "keepOrders,false" in the config file), filled
+	orders are only counted in filledStats, and are charted as soon
+	as they are filled, so that the memory use does not grow with
+	the length of the simulation.
+     */
+    private final boolean keepOrders;
+
+    /** Orders are moved here once they have been fully filled
+	(unless keepOrders==false) */
     Vector<Order> filledOrders = new Vector<>();
 
+    /** Running waiting-time stats for all filled orders */
+    private final Stats filledStats = new Stats();
+
+    /** Running aggregates for the outstanding orders: their number,
+	their total size, and the sum of their creation dates weighted
+	by size. This is all one needs to compute the waiting-time
+	stats for the unfilled orders "as of now". */
+    private int openCnt = 0;
+    private double openSumN = 0, openSumDateN = 0;
+    /** The total size of the outstanding orders, by creation date.
+	Since the orders are placed once a day, there are only as many
+	entries as there are distinct days on which the still-open
+	orders were placed, rather than one per order. */
+    private final TreeMap<Double,Double> openByDate = new TreeMap<>();
+
+    /** Accounts for a newly placed order that could not be filled
+	immediately */
+    private void orderOpened(Order order) {
+	openCnt++;
+	openSumN += order.amount0;
+	openSumDateN += order.date*order.amount0;
+	Double w = openByDate.get(order.date);
+	openByDate.put(order.date, (w==null? 0: w) + order.amount0);
+	onOrder.add(order);
+    }
+
+    /** Accounts for a fully filled order */
+    private void orderFilled(Order order, boolean wasOpen) {
+	if (wasOpen) {
+	    openCnt--;
+	    openSumN -= order.amount0;
+	    openSumDateN -= order.date*order.amount0;
+	    double w = openByDate.get(order.date) - order.amount0;
+	    if (w>0) openByDate.put(order.date, w);
+	    else openByDate.remove(order.date);
+	    if (openCnt==0) openSumN = openSumDateN = 0;
+	}
+	filledStats.addOrder(order, Double.NaN);
+	if (keepOrders) filledOrders.add(order);
+	else plotSomeOrders(Collections.singleton(order), Double.NaN);
+    }
+
     private OnOrder onOrder;
 
     
     /** Consumes product out of the Hospital/Pharmacy pool on a certain schedule */
     public void step(sim.engine.SimState state) {
 	try {
-	boolean hasOrder = state.random.nextBoolean(orderProbability);
+	boolean hasOrder = random.nextBoolean(orderProbability);
 
 	if (hasOrder) {
 	    double demand = orderSizeDistribution.nextDouble();
@@ -127,10 +190,10 @@ public class EndCustomer extends MSink implements Reporting {
 	    hasExtra -= reduceBy;
 	    if (order.amount==0) {
 		order.filled(now());
-		filledOrders.add(order);
+		orderFilled(order, false);
 	    } else {
 		source.request(order);
-		onOrder.add(order);
+		orderOpened(order);
 	    }
 	}
 
@@ -166,7 +229,7 @@ public class EndCustomer extends MSink implements Reporting {
 	double a = b.getContentAmount();
 
 	double late = onOrder.subtract(now(), a);
-	filledOrders.addAll(onOrder.getLastFilled());
+	for(Order order: onOrder.getLastFilled()) orderFilled(order, true);
 	if (late>0) {
 	    //System.out.println("DEBUG: "+getName()+", at=" + now+", just processed a late shipment of " + late);
 	}
@@ -178,15 +241,18 @@ public class EndCustomer extends MSink implements Reporting {
 	
 	//	everReceivedBad += ((Batch)resource).getLot().illicitCount;
 	boolean z = super.accept( provider, resource,  atLeast, atMost);
-	return z;
+	return NodeProfiler.countOffer(this, z);
     }
 
     /** Overall stats on spacecraft waiting for their panels */
-    public static class Stats implements Cloneable {
+    public static class Stats implements Cloneable, Serializable {
 	public long sumN = 0;
 	public double sumT = 0;
 	public double avgT = Double.NaN;
 	public int cnt=0;
+	/** The distribution of waiting times, weighted (like avgT) by
+	    the order size */
+	public QuantileSketch sketch = new QuantileSketch();
 	
 	public Stats() {}
 	/** @param orders An array of orders (either all filled ones, or
@@ -200,36 +266,67 @@ public class EndCustomer extends MSink implements Reporting {
 	    and we compute each order's waiting times from its
 	    creation to "now".
 	 */
-	public Stats(Vector<Order> orders, double now) {	    
+	public Stats(Collection<Order> orders, double now) {	    
 	    for(Order order: orders) {
-		double t = now;
-		if (Double.isNaN(t)) {
-		    if (order.filledDate==Double.NaN) throw new AssertionError("No filled date");
-		    t = order.filledDate;
-		    if (Double.isNaN(t)) throw new AssertionError("Unfilled order: "+ order);
-		}
-		if (Double.isNaN(order.date)) throw new AssertionError("No order date");
-		double x = t-order.date;
-		sumT += x*order.amount0;
-		if (order.amount0==0) throw new AssertionError("Empty order: "+ order);
-		sumN += order.amount0;
-		cnt++;
-
-		if (sumN>0) avgT = sumT/sumN;
+		addOrder(order, now);
 	    }
 	    if (sumN>0) avgT = sumT/sumN;
 	}
 
+	/** Adds one order to the stats.
+	    @param now As in the Stats(...) constructor
+	 */
+	void addOrder(Order order, double now) {
+	    double t = now;
+	    if (Double.isNaN(t)) {
+		if (order.filledDate==Double.NaN) throw new AssertionError("No filled date");
+		t = order.filledDate;
+		if (Double.isNaN(t)) throw new AssertionError("Unfilled order: "+ order);
+	    }
+	    if (Double.isNaN(order.date)) throw new AssertionError("No order date");
+	    double x = t-order.date;
+	    sumT += x*order.amount0;
+	    if (order.amount0==0) throw new AssertionError("Empty order: "+ order);
+	    sumN += order.amount0;
+	    cnt++;
+	    sketch.add(x, order.amount0);
+
+	    if (sumN>0) avgT = sumT/sumN;
+	}
+
 	/** Adds the other set of stats to this one */
 	void add(Stats o) {
 	    cnt += o.cnt;
 	    sumN += o.sumN;
 	    sumT += o.sumT;
 	    if (sumN>0) avgT = sumT/sumN;
+	    sketch.merge(o.sketch);
+	}
+
+	/** Estimates the q-th quantile of the (order-size-weighted)
+	    waiting times, e.g. quantile(0.9) for p90 */
+	public double quantile(double q) {
+	    return sketch.quantile(q);
+	}
+
+	/** Returns a metric by name: "avg" for the average waiting
+	    time, or "pNN" (e.g. "p50", "p90", "p99", "p99.9") for a
+	    quantile. This is convenient for using these metrics as
+	    optimization objectives. */
+	public double get(String metric) {
+	    if (metric.equals("avg")) return avgT;
+	    if (metric.startsWith("p")) {
+		try {
+		    return quantile(Double.parseDouble(metric.substring(1))/100);
+		} catch(NumberFormatException ex) {}
+	    }
+	    throw new IllegalArgumentException("Unknown waiting time metric: " + metric);
 	}
 
 	protected Object clone() throws CloneNotSupportedException {
-	    return super.clone();
+	    Stats c = (Stats)super.clone();
+	    c.sketch = sketch.copy();
+	    return c;
 	}
 
 	public Stats copy() {
@@ -239,7 +336,7 @@ public class EndCustomer extends MSink implements Reporting {
 	}
 	
 	public String toString() {
-	    return "" + sumT + "/" + sumN + "=" + avgT + " on " + cnt + " orders";
+	    return "" + sumT + "/" + sumN + "=" + avgT + " on " + cnt + " orders; " + sketch;
 	}
     }
 
@@ -248,11 +345,23 @@ public class EndCustomer extends MSink implements Reporting {
 	@return  the avg waiting time for filled orders, or NaN if none has been filled yet
      */
     public Stats avgWaitingFilled() {
-	return new Stats(filledOrders, Double.NaN);
+	return filledStats.copy();
     }
 
+    /** Computes the avg waiting time (so far) for unfilled orders,
+	from the running aggregates. The distribution sketch is built
+	from the per-day totals, without scanning the orders. */
     public Stats avgWaitingUnfilled() {
-	return new Stats(onOrder.data, now());
+	Stats s = new Stats();
+	s.cnt = openCnt;
+	s.sumN = (long)openSumN;
+	s.sumT = now()*openSumN - openSumDateN;
+	if (s.sumN>0) s.avgT = s.sumT/s.sumN;
+	double now = now();
+	for(Map.Entry<Double,Double> e: openByDate.entrySet()) {
+	    s.sketch.add(now-e.getKey(), e.getValue());
+	}
+	return s;
     }
 
     /** The average weighted waiting time for all orders, filled (from creation to filling) and
@@ -279,7 +388,7 @@ public class EndCustomer extends MSink implements Reporting {
 			       + " days so far");
 	
 	if (aw.cnt>0) 	v.add( " for all "+aw.cnt+" orders " + aw.avgT
-			       + " days so far");
+			       + " days so far (" + aw.sketch + ")");
 	
 
 	if (v.size()>0) s += ". Avg waiting time" + String.join(",", v) + ".";
@@ -353,16 +462,12 @@ public class EndCustomer extends MSink implements Reporting {
 	end of the simulation.
 	
        @param now As in the Stats(...) constructor */
-    private void plotSomeOrders(Vector<Order> orders, double now) {	    
+    private void plotSomeOrders(Collection<Order> orders, double now) {	    
 	try {
 	    if (charter==null) 	prepareCharter();       
 
 	    for(Order order: orders) {
-		double t = order.filledDate;
-		double data[] = { order.amount0,
-				  order.date,
-				  Double.isNaN(t)? now: t};
-		charter.print(data);
+		plotOrder(order, now);
 	    }
 	} catch(IOException ex) {
 	    ex.printStackTrace(System.err);
@@ -370,15 +475,27 @@ public class EndCustomer extends MSink implements Reporting {
 	}
     }
 
+    /** Prints one order's line into the charts file.
+	@param now As in the Stats(...) constructor */
+    private void plotOrder(Order order, double now) throws IOException {
+	if (charter==null) 	prepareCharter();       
+	double t = order.filledDate;
+	double data[] = { order.amount0,
+			  order.date,
+			  Double.isNaN(t)? now: t};
+	charter.print(data);
+    }
+
     /** Prints 2 datasets (filled and unfilled) into the charts file,
 	with a blank line between them
      */
     void plotAllOrders() {
-	plotSomeOrders(filledOrders, Double.NaN);
+	// If !keepOrders, the filled orders have already been printed
+	plotSomeOrders(keepOrders? filledOrders: new Vector<Order>(), Double.NaN);
 	charter.println();
 	charter.println();
 	// Unfilled
-	plotSomeOrders(onOrder.data, now());
+	plotSomeOrders(onOrder.getOutstanding(), now());
     }
 
 	    
@@ -27,6 +27,10 @@ class InputStore extends sim.des.Queue {
     /** Keeps track of the amount of product that has been discarded because we discovered
 	that it was too close to expiration.  */
     final ExpiredSink expiredProductSink;
+
+    /** Keeps the stored batches ordered by expiration date, so that
+	expired ones can be purged without scanning the whole buffer */
+    private final ExpirationIndex expirationIndex = new ExpirationIndex();
   
     /** Simulates theft or destruction (disruption type A4 etc) */
     final Sink stolenDump;
@@ -111,6 +115,16 @@ class InputStore extends sim.des.Queue {
 	//-- we schedule it so that it would check for replenishment daily
 	state.schedule.scheduleRepeating(safety);
 
+	Telemetry tm = Telemetry.getCurrent();
+	if (tm!=null) {
+	    tm.addGauge(this, "lots", new Telemetry.Gauge() {
+		    public double value() { return entities==null? 0: entities.size(); }
+		});
+	    tm.addGauge(this, "content", new Telemetry.Gauge() {
+		    public double value() { return currentStock; }
+		});
+	}
+
 	// Optionally, this may be a pool capable of sending replenishement requests
 	para = config.get(name);
 
@@ -137,6 +151,7 @@ class InputStore extends sim.des.Queue {
     }
 
     private boolean remove(Batch b) {
+	expirationIndex.remove(b);
 	return entities.remove(b);
     }
     
@@ -192,7 +207,7 @@ class InputStore extends sim.des.Queue {
 	    if (newBatch.getContentAmount() != consumed) throw new AssertionError();
 	    if (!offerReceiver(sink, newBatch)) throw new AssertionError("Sinks ought not refuse stuff!");
 
-	    //boolean debug = !Demo.quiet && getName().equals("substrateSmallProd.input.prepreg");
+	    //boolean debug = !Demo.quiet() && getName().equals("substrateSmallProd.input.prepreg");
 	    //if (debug) System.out.println("DEBUG: " +getName() + " had "+consumed+" units consumed: " + report(true));
 	    
 	    return newBatch;
@@ -236,22 +251,18 @@ class InputStore extends sim.des.Queue {
     boolean hasEnough(double inBatchSize) {
 	if (inBatchSize==0) return true; 
 	if (getTypicalProvided() instanceof Batch) {
-	    double expiredAmt[]={0};
-	    double t = state.schedule.getTime();
-
-	    boolean has = expiredProductSink.hasEnoughNonExpired(this, entities, expiredAmt, inBatchSize);
-	    currentStock -= expiredAmt[0];
-
-	    if (expiredAmt[0]!=0) {
-		//boolean debug = !Demo.quiet && getName().equals("substrateSmallProd.input.prepreg");
-		//if (debug) System.out.println("DEBUG: " +getName() + " had " +expiredAmt[0] + " units expired: " + report(true));
+	    // Once all expired lots have been purged, everything left
+	    // is good, so the running total is all we need to look at
+	    double expiredAmt = expiredProductSink.purgeExpired(this, entities, expirationIndex);
+	    currentStock -= expiredAmt;
+
+	    if (expiredAmt!=0) {
+		//boolean debug = !Demo.quiet() && getName().equals("substrateSmallProd.input.prepreg");
+		//if (debug) System.out.println("DEBUG: " +getName() + " had " +expiredAmt + " units expired: " + report(true));
 	    }
 
-
-
-	    
 	    doubleCheck();
-	    return has;
+	    return currentStock >= inBatchSize;
 	} else if (getTypicalProvided()  instanceof CountableResource) {
 	    double spare = getAvailable() -  inBatchSize;
 	    return spare>=0;// || (safety!=null && safety.hasEnough(-spare));
@@ -278,7 +289,7 @@ class InputStore extends sim.des.Queue {
 		destroyed += a;
 		stolenBatches ++;
 		
-		//boolean debug = !Demo.quiet && getName().equals("substrateSmallProd.input.prepreg");
+		//boolean debug = !Demo.quiet() && getName().equals("substrateSmallProd.input.prepreg");
 		//if (debug) System.out.println("DEBUG: " +getName() + " had " +a + " units destroyed: " + report(true));
 
 
@@ -301,14 +312,14 @@ class InputStore extends sim.des.Queue {
     /** Performs certain auxiliary operation piggy-backed on acceptance
      */
     public boolean accept(Provider provider, Resource amount, double atLeast, double atMost) {
-	if (Demo.verbose && whose.getName().equals("prepregProd")) {
+	if (Demo.verbose() && whose.getName().equals("prepregProd")) {
 	    System.out.println("DEBUG: " + getName() + ".accept(" + amount +
 			       ") from " + provider);
 	}
 	double now = state.schedule.getTime();
 	if (resetExpiration) {
 	    ((Batch)amount).resetExpiration(now);
-	    if (Demo.verbose && whose.getName().equals("prepregProd")) {
+	    if (Demo.verbose() && whose.getName().equals("prepregProd")) {
 		LotInfo li = ((Batch)amount).getLot();
 		System.out.println("DEBUG: " + getName() + ".accept(" + amount +
 				   ") from " + provider + ", reset expiration; lot="+ li);
@@ -316,7 +327,7 @@ class InputStore extends sim.des.Queue {
 	    }
 	}
 	
-	return doAccept(provider,  amount, atLeast, atMost, false);
+	return NodeProfiler.countOffer(this, doAccept(provider,  amount, atLeast, atMost, false));
     }
 
     /** @param isInit If true, just puts stuff in, without any additional
@@ -329,12 +340,13 @@ class InputStore extends sim.des.Queue {
 
 	if (!prototype.isSameType(amount)) throw new AssertionError(getName() + " receiving " + amount+ ", from " + provider);
 
-	//boolean debug = !Demo.quiet && getName().equals("substrateSmallProd.input.prepreg");
+	//boolean debug = !Demo.quiet() && getName().equals("substrateSmallProd.input.prepreg");
 	
 
 	boolean z = super.accept(provider,  amount, atLeast,  atMost);
 	if (!z) throw new AssertionError();
 	currentStock += a;
+	if (amount instanceof Batch) expirationIndex.add((Batch)amount);
 	//if (debug) System.out.println("DEBUG: " + getName() + " accepted "+a+" units; " + report(true));
 	doubleCheck();
 	if (isInit) return z; // it's no time to do anything else as the system is not ready yet
@@ -74,7 +74,7 @@ public class ProdDelay extends CustomDelay
 
 	boolean z = super.accept( provider, r, atLeast, atMost);
 	if (!z) throw new AssertionError("Unexpected rejection of accept ny " + getName());
-	if (Demo.verbose) {
+	if (Demo.verbose()) {
 	    if (r instanceof Batch) {
 		((Batch)r).addToMsg("[ProdDelay.acc@"+now+", hb="+hasBatches()+"]");
 	    }
@@ -82,7 +82,7 @@ public class ProdDelay extends CustomDelay
 	}
 	totalUsedTime += getDelayTime();
 	
-	return z;
+	return NodeProfiler.countOffer(this, z);
     }
     
     public String hasBatches() {
@@ -91,7 +91,9 @@ public class ProdDelay extends CustomDelay
 	return s;
     }
 
-    static private DecimalFormat df = new DecimalFormat("0.00#");    
+    /** Not static, because DecimalFormat is not thread-safe, and several
+	simulation runs may be executed concurrently */
+    private final DecimalFormat df = new DecimalFormat("0.00#");
 
 
     public String report() {
@@ -18,7 +18,7 @@ import edu.rutgers.supply.Disruptions.Disruption;
     The buffer is self-replenishable, sending orders to the suppliers when needed.
  */
 class Production extends AbstractProduction
-    implements Reporting, BatchProvider2
+    implements Reporting, BatchProvider2, DisruptionListener
 {
 
     double now() {
@@ -112,7 +112,7 @@ class Production extends AbstractProduction
     /** A Recipe contains information about the inputs needed to
 	produce a batch of an output product. 
      */
-    class Recipe {
+    class Recipe implements Serializable {
 	/** How many units of each input need to be taken to start cooking a batch? */
 	final double[] inBatchSizes;
 	/** How big is the output batch? */
@@ -156,7 +156,7 @@ class Production extends AbstractProduction
      */
     Receiver mkInputDelay(int j) throws IllegalInputException {
 	String key="inputDelay."+j;
-	AbstractDistribution d =  para.getDistribution(key ,state.random);
+	AbstractDistribution d =  para.getDistribution(key , Demo.streams(state));
 	if (d==null) throw new  IllegalInputException("Production unit " + getName() + " does not have an " + key + " in its parameter set");
 	Delay delay  = new Delay(state, outResource);
 	//if (getEntrance(j)==null) throw new AssertionError();
@@ -213,7 +213,7 @@ class Production extends AbstractProduction
 	
 	manual = para.getBoolean("manual", false);
 
-	AbstractDistribution od = para.getDistribution("orderDelay" ,state.random);
+	AbstractDistribution od = para.getDistribution("orderDelay" , Demo.streams(state));
 	if (od!=null) {
 	    orderDelay = new OrderDelay(state, this);
 	    orderDelay.setDelayDistribution( od);
@@ -242,6 +242,14 @@ class Production extends AbstractProduction
 
 	    if (this instanceof Macro) addReceiver(inputStore[j], false); 
 	}
+
+	// In the event-driven disruption mode, we'll be told about
+	// disruptions affecting this unit and its input buffers
+	Demo demo = (Demo)state;
+	demo.addDisruptionListener(getName(), this);
+	for(int j=0; j<nin; j++) {
+	    demo.addDisruptionListener(getName() +  "." + inputStore[j].getUnderlyingName(), this);
+	}
 	
 
 	//-- Are trans and QA stages throttled (FIFO) or parallel?
@@ -256,9 +264,9 @@ class Production extends AbstractProduction
 	
 	if (qaDelay != null) {
 
-	    AbstractDistribution d=para.getDistribution("qaDelay",state.random);
+	    AbstractDistribution d=para.getDistribution("qaDelay", Demo.streams(state));
 	    boolean unit = (d==null);
-	    if (unit)  d = para.getDistribution("qaDelayUnit",state.random);
+	    if (unit)  d = para.getDistribution("qaDelayUnit", Demo.streams(state));
 	    if (d==null) throw new IllegalInputException("No qaDelay or qaDelayUnit in param set for " + getName());
 	    DelayRules dr = new DelayRules(d, unit, qaDelayFactorUntil);
 	    qaDelay.setDelayRules(dr);
@@ -276,7 +284,7 @@ class Production extends AbstractProduction
 
 	if (para.get("transDelay")!=null) {
 	    
-	    AbstractDistribution d =  para.getDistribution("transDelay",state.random);
+	    AbstractDistribution d =  para.getDistribution("transDelay", Demo.streams(state));
 	    // if there is a trans delay, its cost is  always batch-based (not unit-based) cost
 	    DelayRules dr = new DelayRules(d, false, transDelayFactorUntil);
 	    transDelay = new CustomDelay(state, outResource);
@@ -326,7 +334,7 @@ class Production extends AbstractProduction
 	Receiver w = (getTransEntrance()!=null) ? getTransEntrance(): getQaEntrance();
 	if (w!=null) {
 	    prodStage().addReceiver(w);
-	    if (Demo.verbose) System.out.println( "INNER_LINK: " + prodStage().getName() + " sends to "+ w.getName());
+	    if (Demo.verbose()) System.out.println( "INNER_LINK: " + prodStage().getName() + " sends to "+ w.getName());
 	}
 
 
@@ -362,9 +370,9 @@ class Production extends AbstractProduction
 	ProdDelay prodDelay = new ProdDelay(state, this, suff);
 
 
-	AbstractDistribution d = para.getDistribution("prodDelay"+suff,state.random);
+	AbstractDistribution d = para.getDistribution("prodDelay"+suff, Demo.streams(state));
 	boolean unit = (d==null);
-	if (unit)  d = para.getDistribution("prodDelayUnit"+suff,state.random);
+	if (unit)  d = para.getDistribution("prodDelayUnit"+suff, Demo.streams(state));
 	DelayRules dr = (d!=null) ?
 	    new DelayRules(d, unit, prodDelayFactorUntil):
 	    new DelayRules(0.0001);
@@ -458,20 +466,20 @@ class Production extends AbstractProduction
 
 	    Disruptions.Type type = Disruptions.Type.Depletion;
 	    
-	    Vector<Disruption> vd = ((Demo)state).hasDisruptionToday(type, dname);
+	    List<Disruption> vd = disruptionsToday(type, dname);
 	    if (vd.size()==1) {
 		// deplete inventory
 		//double amt = Math.round(vd.get(0).magnitude * 1e7);
 		double amt = Math.round(vd.get(0).magnitude);
 		double x = p.deplete(amt);
-		if (!Demo.quiet) System.out.println("Input buffer " + dname + ": disruption could destroy up to " + amt + " units, actually destroys " + x);
+		if (!Demo.quiet()) System.out.println("Input buffer " + dname + ": disruption could destroy up to " + amt + " units, actually destroys " + x);
 
 	    } else if (vd.size()>1) {
 		throw new IllegalArgumentException("Multiple disruptions of the same type in one day -- not supported. Data: "+ Util.joinNonBlank("; ", vd));
 	    }
 
 	    type = Disruptions.Type.DisableTrackingSafetyStock;	    
-	    vd = ((Demo)state).hasDisruptionToday(type, dname);
+	    vd = disruptionsToday(type, dname);
 	    if (vd.size()==1) {
 		// stop SS level tracking for a while
 		double end = vd.get(0).end();
@@ -479,7 +487,7 @@ class Production extends AbstractProduction
 		if (p.safety==null) {
 		    throw new IllegalArgumentException("It is impossible to disable the safety stock (disruption " + vd.get(0) +" on input buffer " + p + "), because that input buffer has no safety stock to begin with");
 		}
-		if (!Demo.quiet) System.out.println("Input buffer " + dname + ": at "+now+", disruption stops SS level tracking until t=" + end);
+		if (!Demo.quiet()) System.out.println("Input buffer " + dname + ": at "+now+", disruption stops SS level tracking until t=" + end);
 		p.safety.haltUntil( end );
 		
 	    } else if (vd.size()>1) {
@@ -488,7 +496,7 @@ class Production extends AbstractProduction
 
 
 	    type = Disruptions.Type.TransDelayFactor;	    
-	    vd = ((Demo)state).hasDisruptionToday(type, dname);
+	    vd = disruptionsToday(type, dname);
 	    if (vd.size()==1) {
 		// Slow down the stream of supplies
 		Disruption d = vd.get(0);
@@ -497,7 +505,7 @@ class Production extends AbstractProduction
 		if (p.safety==null) {
 		    throw new IllegalArgumentException("It is impossible to slow down supplies of stock (disruption " + d +" on input buffer " + p + "), because that input buffer has no suitable supply mechanism to begin with");
 		}
-		if (!Demo.quiet) System.out.println("Input buffer " + dname + ": at "+now+", supply slow down by factor="+d.magnitude+" until t=" + end);
+		if (!Demo.quiet()) System.out.println("Input buffer " + dname + ": at "+now+", supply slow down by factor="+d.magnitude+" until t=" + end);
 		p.safety.transDelayFactorUntil.setValueUntil(d);
 		
 	    } else if (vd.size()>1) {
@@ -604,7 +612,7 @@ class Production extends AbstractProduction
 
 	everPlanned += order.amount;
 
-	if (Demo.verbose) System.out.println("DEBUG: " +getName() + ", at "+now()+" added to plan "+ order.amount +", everPlanned=" + everPlanned);
+	if (Demo.verbose()) System.out.println("DEBUG: " +getName() + ", at "+now()+" added to plan "+ order.amount +", everPlanned=" + everPlanned);
 
 	
 	
@@ -628,19 +636,19 @@ class Production extends AbstractProduction
 
 
 	//if (order.channel.isInfoHalted(now())) {
-	//    if (!Demo.quiet) System.out.println("At " + now()+", " + getName() + " ignored cancelation(" + order
+	//    if (!Demo.quiet()) System.out.println("At " + now()+", " + getName() + " ignored cancelation(" + order
 	//						+") because of info disruption");
     //    return;
     //	}
 
 	for(int j=0; j<needToSend.size(); j++) {
 	    if (needToSend.get(j).id == order.id) {
-		if (!Demo.quiet) System.out.println("At " + now()+", " + getName() + " canceling order: " + needToSend.get(j));
+		if (!Demo.quiet()) System.out.println("At " + now()+", " + getName() + " canceling order: " + needToSend.get(j));
 		needToSend.remove(j);
 		return;
 	    }
 	}
-	if (!Demo.quiet) System.out.println("At " + now()+", " + getName() + " cannot cancel already executed order: " + order);
+	if (!Demo.quiet()) System.out.println("At " + now()+", " + getName() + " cannot cancel already executed order: " + order);
     }
     
     /** After a batch has been made, subtracts it from the plan. Orders
@@ -657,11 +665,48 @@ class Production extends AbstractProduction
 	}
     }
 
+    /** In the event-driven disruption mode, this is where the
+	disruptions affecting this unit (or its input buffers) on the
+	current day are stored, until step() acts on them. This way, the
+	disruptions take effect at the same point of the day at which
+	they would if step() polled for them. */
+    private final Vector<Disruption> disruptionInbox = new Vector<>();
+    /** The day to which the content of disruptionInbox pertains */
+    private double inboxDay = Double.NaN;
+
+    /** Called by the DisruptionDispatcher before this unit is stepped */
+    public void disruptionToday(Disruption d) {
+	double now = now();
+	if (now != inboxDay) {
+	    disruptionInbox.clear();
+	    inboxDay = now;
+	}
+	disruptionInbox.add(d);
+    }
+
+    /** Finds the disruptions of the specified type affecting the
+	specified unit (this unit, or one of its input buffers) today.
+	Depending on the mode, this is done either by polling the
+	Disruptions object, or by looking at what the
+	DisruptionDispatcher has delivered for today.
+     */
+    private List<Disruption> disruptionsToday(Disruptions.Type type, String unitName) {
+	Demo demo = (Demo)state;
+	if (!demo.getEventDrivenDisruptions()) return demo.hasDisruptionToday(type, unitName);
+	if (disruptionInbox.isEmpty() || inboxDay != now()) return Collections.emptyList();
+	Vector<Disruption> v = new Vector<>();
+	for(Disruption d: disruptionInbox) {
+	    if (d.getType()==type && d.getUnitName().equals(unitName)) v.add(d);
+	}
+	return v;
+    }
+
     private double everStolen=0;
 
     /** Destroys some shipments in the transportation delay (between production and QA) */
     private void disruptShipments(SimState state) {
-	everStolen += 	ShipmentLoss.disruptShipments( state,  getName(), transDelay);
+	everStolen += 	ShipmentLoss.disruptShipments( state,  getName(), transDelay,
+						       disruptionsToday(Disruptions.Type.ShipmentLoss, getName()));
     }
     
       /** See if the production plan and the available inputs mandate the
@@ -680,12 +725,12 @@ class Production extends AbstractProduction
 
 	    double now = state.schedule.getTime();
 	    
-	    for(Disruption d:  ((Demo)state).hasDisruptionToday(Disruptions.Type.Adulteration, getName())) {
+	    for(Disruption d:  disruptionsToday(Disruptions.Type.Adulteration, getName())) {
 		
 		// reduce quality of newly produced lots, in effect for 1 day
 		//double r = 0.1 * d.magnitude;
 		double r = d.magnitude;
-		if (!Demo.quiet)  System.out.println("At t=" + now + ", Production unit "+ getName() +" increasing failure rate by " + r +", until " + d.end());
+		if (!Demo.quiet())  System.out.println("At t=" + now + ", Production unit "+ getName() +" increasing failure rate by " + r +", until " + d.end());
 		prodStage().setFaultRateIncrease(r, d.end());
 	    }
 
@@ -708,9 +753,9 @@ class Production extends AbstractProduction
     
 	    for(int j=0; j<types.length; j++) {
 		Disruptions.Type type = types[j];
-		for(Disruption d: ((Demo)state).hasDisruptionToday(type, getName())) {
+		for(Disruption d: disruptionsToday(type, getName())) {
 		    timers[j].setValueUntil(d);
-		    if (Demo.verbose) {
+		    if (Demo.verbose()) {
 			String msg = "At t=" + now + ", Production unit "+ getName() + " has " +
 			    (type==Disruptions.Type.On?"command":"disruption")+
 			    " '"+type+"', mag="+d.magnitude+", until " + d.end()
@@ -720,7 +765,7 @@ class Production extends AbstractProduction
 		}
 	    }
 
-	    //	    boolean debug = !Demo.quiet && getName().equals("arrayLargeAssembly");
+	    //	    boolean debug = !Demo.quiet() && getName().equals("arrayLargeAssembly");
 	    //if (!hasEnoughInputs()) {
 	    //	if (debug) System.out.println("At t=" + now + ", "+ getName() + " production is starved. Input stores: " + reportInputs(true));
 	    //	return;
@@ -838,7 +883,7 @@ class Production extends AbstractProduction
 	double ratio[] = {1,1};
 	if (prorate) ratio = new double[] { need, recipe.outBatchSize};
 
-	boolean debug = Demo.verbose;
+	boolean debug = Demo.verbose();
 	//	    (getName().equals("arrayLargeAssembly") || getName().equals("arraySmallAssembly"));
 
 
@@ -980,7 +1025,7 @@ class Production extends AbstractProduction
     Delay mkOutputDelay(Receiver rcv)  throws IllegalInputException {
 
 
-	AbstractDistribution distr = para.getDistribution("outputDelay", state.random); 
+	AbstractDistribution distr = para.getDistribution("outputDelay", Demo.streams(state)); 
 	CustomDelay delay = new CustomDelay(state, outResource);
 	//delay.setDelayDistribution(distr);
 	DelayRules dr = new DelayRules(distr, false, transDelayFactorUntil);
@@ -1043,7 +1088,7 @@ class Production extends AbstractProduction
 	    }
 	    double f = Double.parseDouble(output.get(2));
 
-	    if (Demo.verbose) System.out.println( "OUTER_LINK: " + getName() + " sends to "+ r.getName());
+	    if (Demo.verbose()) System.out.println( "OUTER_LINK: " + getName() + " sends to "+ r.getName());
 
 	    Receiver h = (para.get("outputDelay")!=null)? mkOutputDelay(r): r;
 	    setQaReceiver(h, 1.0);	
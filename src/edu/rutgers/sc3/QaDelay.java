@@ -54,6 +54,21 @@ public class QaDelay extends CustomDelay
     */
     final boolean unitLevel;
 
+    /** If true (and unitLevel is true), the number of "not good"
+	items in a batch is drawn from a binomial distribution, and then
+	split between rework and discard with another binomial draw,
+	rather than making a separate random decision for each item.
+	The distribution of the outcomes is the same, but the cost
+	no longer grows with the batch size. Set via the "qaBinomial"
+	parameter; the default (false) reproduces the per-item draws
+	(and thus the random number sequence) of earlier versions.
+     */
+    final boolean binomialSampling;
+    /** The generator used when binomialSampling is on */
+    private final Binomial binomial;
+    /** The random stream for the per-lot and per-item QA decisions */
+    private final ec.util.MersenneTwisterFast random;
+
     /** Unit (pill) counts for the 3 directions of flow. */
     double badResource = 0, reworkResource=0, releasedGoodResource=0;
     public double getBadResource() { return badResource; }
@@ -132,6 +147,9 @@ public class QaDelay extends CustomDelay
 
 
 	resetExpiration = para.getBoolean("qaResetExpiration", false);
+	binomialSampling = para.getBoolean("qaBinomial", false);
+	random = Demo.streams(state).get(para.name + ".qa");
+	binomial = binomialSampling? new Binomial(1, 0.5, Demo.streams(state).get(para.name + ".qaBinomial")): null;
 	
 	// In SC-3, the post-QA rework sometimes is carried out as if
 	// on a separate dedicated production line with its own
@@ -187,7 +205,7 @@ static public QaDelay mkQaDelay(Config config, ParaSet para, SimState state,
 	} else if (para.get("faulty").size()==1) {
 	    faultyProb = para.getDouble("faulty");
 	} else {
-	    faultyPortionDistribution = para.getDistribution("faulty",state.random);
+	    faultyPortionDistribution = para.getDistribution("faulty", Demo.streams(state));
 	}
 	double reworkProb = para.getDouble("rework", 0.0);	    
 
@@ -261,12 +279,18 @@ static public QaDelay mkQaDelay(Config config, ParaSet para, SimState state,
 		
 		int n = (int)Math.round(amt);
 		if (n != amt) throw new IllegalArgumentException("Cannot perform unit-level QA decisions, because batch size is not integer: " + amt);
-		for(int j=0; j<n; j++) {		    
-		    boolean isBad = state.random.nextBoolean(notGoodProb);
-		    if (isBad) {
-			boolean willRework = state.random.nextBoolean( reworkProb/notGoodProb);
-			if (willRework) rework++;
-			else discard++;
+		if (binomialSampling) {
+		    int bad = DistributionUtil.nextBinomial(binomial, n, notGoodProb);
+		    rework = DistributionUtil.nextBinomial(binomial, bad, reworkProb/notGoodProb);
+		    discard = bad - rework;
+		} else {
+		    for(int j=0; j<n; j++) {		    
+			boolean isBad = random.nextBoolean(notGoodProb);
+			if (isBad) {
+			    boolean willRework = random.nextBoolean( reworkProb/notGoodProb);
+			    if (willRework) rework++;
+			    else discard++;
+			}
 		    }
 		}
 	    }
@@ -305,9 +329,9 @@ static public QaDelay mkQaDelay(Config config, ParaSet para, SimState state,
     */
     protected boolean offerReceiver(Receiver receiver, double atMost) {
 
-	if (Demo.verbose)   System.out.println(getName() + ".offerReceiver(" +receiver+", " + atMost+")");
+	if (Demo.verbose())   System.out.println(getName() + ".offerReceiver(" +receiver+", " + atMost+")");
  
-	boolean showAge = false; // !Demo.quiet;
+	boolean showAge = false; // !Demo.quiet();
 	boolean z;
 
 	double now = state.schedule.getTime();
@@ -421,9 +445,9 @@ static public QaDelay mkQaDelay(Config config, ParaSet para, SimState state,
 	    double notGoodProb = Math.min( dp + reworkProb, 1);
 	    if ( notGoodProb  >0) {
 		
-		boolean isBad = state.random.nextBoolean(notGoodProb);
+		boolean isBad = random.nextBoolean(notGoodProb);
 		if (isBad) {
-		    willRework = state.random.nextBoolean( reworkProb/notGoodProb);
+		    willRework = random.nextBoolean( reworkProb/notGoodProb);
 		    willDiscard = !willRework;
 		}
 	    }
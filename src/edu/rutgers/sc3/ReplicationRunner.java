@@ -0,0 +1,188 @@
+package  edu.rutgers.sc3;
+
+import edu.rutgers.supply.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.text.*;
+
+import sim.engine.*;
+
+import edu.rutgers.util.*;
+
+/** Runs multiple replications (i.e. runs with different random
+    seeds) of the SC-3 model concurrently, on a fork-join pool.
+
+    <p>All replications share the same (read-only) Config and
+    Disruptions objects, supplied via a Demo.MakesDemo object. Each
+    replication, however, is executed in its own RunContext, so that
+    it has its own lot number and order ID generators, its own
+    verbosity settings, and its own chart directory (a subdirectory
+    named "seed-NNN" inside the chart directory given on the command
+    line, if any).
+
+    <p>Sample usage:
+<pre>
+java edu.rutgers.sc3.ReplicationRunner -config ../config/sc3.csv -seed 0 -seeds 100 -threads 32 -until 2000 -charts null
+</pre>
+ */
+public class ReplicationRunner {
+
+    /** The results of one replication */
+    public static class Result {
+	/** The random seed with which this replication was run */
+	final public long seed;
+	/** Waiting time stats, as returned by Demo.getWaitingStats(), i.e.
+	    {statsForFilled, statsForUnfilled, statsForAll } */
+	final public EndCustomer.Stats[] stats;
+
+	Result(long _seed, EndCustomer.Stats[] _stats) {
+	    seed = _seed;
+	    stats = _stats;
+	}
+    }
+
+    /** Creates the Demo objects, with the shared config and disruptions */
+    private final Demo.MakesDemo maker;
+    /** The command line arguments (other than those interpreted by maker) */
+    private final String[] argv;
+    /** The number of time steps (days) to run each simulation for */
+    private final double until;
+    /** The directory inside which each replication's chart directory will be
+	created, or null if no charting is needed */
+    private final File chartsBase;
+
+    /** Verbosity flags for each run */
+    boolean quiet=true, verbose=false;
+
+    /**
+       @param _maker Contains the Config and Disruptions to use in all runs
+       @param _chartsBase The directory inside which each replication's
+       chart directory will be created. If null, no charts will be written.
+     */
+    public ReplicationRunner(Demo.MakesDemo _maker, String[] _argv, double _until, File _chartsBase) {
+	maker = _maker;
+	argv = _argv;
+	until = _until;
+	chartsBase = _chartsBase;
+    }
+
+    /** Runs one simulation, in the current thread, with its own RunContext.
+     */
+    Result runOne(final long seed) throws IOException, IllegalInputException {
+	File dir = (chartsBase==null)? null: new File(chartsBase, "seed-" + seed);
+	return new ContextRun<Demo,Result>(new RunContext(dir, quiet, verbose), until) {
+	    protected Demo create() {
+		return (Demo)maker.newInstance(seed, argv);
+	    }
+	    protected Result result(Demo demo) {
+		return new Result(seed, demo.getWaitingStats());
+	    }
+	}.run();
+    }
+
+    /** Runs one replication for each of the specified seeds, using
+	a pool of the specified number of threads.
+	@return An array of results, in the same order as the seeds
+     */
+    public Result[] run(long[] seeds, int nThreads) {
+	ForkJoinPool pool = new ForkJoinPool(nThreads);
+	try {
+	    Vector<ForkJoinTask<Result>> tasks = new Vector<>();
+	    for(final long seed: seeds) {
+		tasks.add( pool.submit(new Callable<Result>() {
+			public Result call() throws IOException, IllegalInputException {
+			    return runOne(seed);
+			}
+		    }));
+	    }
+	    Result[] results = new Result[seeds.length];
+	    for(int j=0; j<results.length; j++) {
+		results[j] = tasks.get(j).join();
+	    }
+	    return results;
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    static final DecimalFormat df = new DecimalFormat("0.###");
+
+    /** In addition to all options understood by Demo.MakesDemo, understands
+	the following:
+	<pre>
+	-seed s0 -- the first seed (default 0)
+	-seeds n -- the number of replications (default 10); they will
+	use seeds s0, s0+1, ..., s0+n-1
+	-threads t -- the size of the thread pool (default: the number of
+	available processors)
+	-until t -- the number of days to simulate (default 2000)
+	</pre>
+     */
+    public static void main(String[] argv) throws IOException, IllegalInputException {
+
+	long seed0 = 0;
+	int nSeeds = 10;
+	int nThreads = Runtime.getRuntime().availableProcessors();
+	double until = 2000;
+
+	Vector<String> va = new Vector<String>();
+	for(int j=0; j<argv.length; j++) {
+	    String a = argv[j];
+	    if (a.equals("-seed") && j+1<argv.length) {
+		seed0 = Long.parseLong(argv[++j]);
+	    } else if (a.equals("-seeds") && j+1<argv.length) {
+		nSeeds = Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-threads") && j+1<argv.length) {
+		nThreads = Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-until") && j+1<argv.length) {
+		until = Double.parseDouble(argv[++j]);
+	    } else {
+		va.add(a);
+	    }
+	}
+	if (nSeeds < 1) throw new  IllegalInputException("seeds<1");
+	if (nThreads < 1) throw new  IllegalInputException("threads<1");
+
+	Demo.MakesDemo maker = new Demo.MakesDemo(va.toArray(new String[0]));
+
+	// Per-run verbosity follows the command-line options; but
+	// unless -verbose was asked for, we keep the runs quiet, since
+	// the output of concurrent runs would be interleaved
+	ReplicationRunner runner = new ReplicationRunner(maker, maker.argvStripped, until, Charter.getDir());
+	runner.verbose = Demo.verbose();
+	runner.quiet = !runner.verbose;
+
+	long seeds[] = new long[nSeeds];
+	for(int j=0; j<nSeeds; j++) seeds[j] = seed0 + j;
+
+	long t0 = System.currentTimeMillis();
+	Result[] results = runner.run(seeds, nThreads);
+	long t1 = System.currentTimeMillis();
+
+	double s=0, s2=0;
+	int n=0;
+	// The waiting time distribution over all orders in all runs
+	QuantileSketch pooled = new QuantileSketch();
+	for(Result r: results) {
+	    EndCustomer.Stats aw = r.stats[2];
+	    pooled.merge(aw.sketch);
+	    System.out.println("Seed " + r.seed + ": avg waiting time for all "+aw.cnt+" orders " + df.format(aw.avgT) + " days");
+	    if (aw.cnt>0) {
+		s += aw.avgT;
+		s2 += aw.avgT*aw.avgT;
+		n++;
+	    }
+	}
+	if (n>0) {
+	    double a = s/n;
+	    double dev = Math.sqrt(s2/n - a*a);
+	    System.out.println("For all "+n+" runs, avg waiting time=" + df.format(a) + "+-" + df.format(dev));
+	    System.out.println("For all "+n+" runs, waiting time quantiles: " + pooled);
+	}
+	System.out.println("Ran " + nSeeds + " replications on " + nThreads + " threads in " + (t1-t0)/1000.0 + " sec");
+	System.exit(0);
+    }
+
+}
@@ -192,7 +192,7 @@ public class SafetyStock extends Probe implements Reporting {
 
 
 	    
-	    AbstractDistribution refillDistr = para.getDistribution("delay", state.random); 
+	    AbstractDistribution refillDistr = para.getDistribution("delay", Demo.streams(state)); 
 	    //refillDelay = new Delay(state,prototype);
 	    //refillDelay.setDelayDistribution(refillDistr);
 
@@ -211,6 +211,12 @@ public class SafetyStock extends Probe implements Reporting {
 
 	
 	onOrder = new OnOrder( para.getDouble("orderExpiration", Double.POSITIVE_INFINITY ));
+	Telemetry tm = Telemetry.getCurrent();
+	if (tm!=null) {
+	    tm.addGauge(this, "onOrder", new Telemetry.Gauge() {
+		    public double value() { return onOrder.size(); }
+		});
+	}
 	
 	//Double q = para.getDouble("needsAnomaly", null);
 	//needsAnomaly = (q==null || q<0) ? null: q;
@@ -236,17 +242,17 @@ public class SafetyStock extends Probe implements Reporting {
 	if (isHalted(now())) return; // disruption
 
 	
-	//	if (Demo.verbose && currentStock != getContentAmount()) {
+	//	if (Demo.verbose() && currentStock != getContentAmount()) {
 	//	    System.out.println("DEBUG:" + getName() + ", t="+now+", mismatch(A) stock numbers: currentStock="+currentStock+ ", getContentAmount()=" + getContentAmount());
 	//	}
 
 	Vector<Order> eo = onOrder.refresh(now());
-	if (!Demo.quiet && eo.size()>0)  System.out.println(getName() + ", t="+now()+", expired orders: " + Util.joinNonBlank(", ", eo));
+	if (!Demo.quiet() && eo.size()>0)  System.out.println(getName() + ", t="+now()+", expired orders: " + Util.joinNonBlank(", ", eo));
 
 	double has =  whose.getContentAmount() + onOrder.sum();
 	double deficit = reorderPoint - has;
 
-	//	if (Demo.verbose) System.out.println("DEBUG:" + getName() + ", t="+now+", reorderCheck: "+
+	//	if (Demo.verbose()) System.out.println("DEBUG:" + getName() + ", t="+now+", reorderCheck: "+
 	//			   "RO:"+reorderPoint + " - ( STOCK:"+currentStock+
 	//			   " + OO:" + onOrder + ")=deficit=" + deficit + ". Delay=" +  refillDelay.report());
 
@@ -312,7 +318,7 @@ public class SafetyStock extends Probe implements Reporting {
 		sent += amt;
 		
 	    }
-	    //if (Demo.verbose)
+	    //if (Demo.verbose())
 	    //	System.out.println("DEBUG:" + getName() + " magicFeed gives " + sent);
 	    //return sent;
 	}
@@ -330,7 +336,7 @@ public class SafetyStock extends Probe implements Reporting {
 
 	    Batch b = expiredProductSink.getNonExpiredBatch(this, entities, expiredAmt);
 	    currentStock -= expiredAmt[0];
-	    if (Demo.verbose && currentStock != getContentAmount()) {
+	    if (Demo.verbose() && currentStock != getContentAmount()) {
 		System.out.println("DEBUG:" + getName() + ", t="+t+", mismatch (E) stock numbers: currentStock="+currentStock+ ", getContentAmount()=" + getContentAmount());
 	    }
 	    if (b==null) return false;
@@ -452,7 +458,7 @@ public class SafetyStock extends Probe implements Reporting {
 	//	System.out.println("DEBUG:" + getName() + ", everReceived=" +everReceived +", receivedToday=" + receivedToday + ", currentStock=" + currentStock);
 
 	
-	return z;
+	return NodeProfiler.countOffer(this, z);
     }
 
 
@@ -532,7 +538,7 @@ public class SafetyStock extends Probe implements Reporting {
 	magicChannel = new Channel(mySource, refillDelay!=null?refillDelay:this, getName());
 
 
-	if (Demo.verbose) System.out.println(getName() + " is set up with source=" + mySource.getName() +", mto="  + mto);
+	if (Demo.verbose()) System.out.println(getName() + " is set up with source=" + mySource.getName() +", mto="  + mto);
     }
     
     /** Places an MTO order, if needed for this buffer.
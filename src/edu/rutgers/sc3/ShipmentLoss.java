@@ -24,13 +24,14 @@ public class ShipmentLoss {
 	All nodes with the same timestamps are interpreted as a single shipment.
 
 	@param transDelay The SimpleDelay object, representing shipments currently in transit, which is to be affected by a disruption. (That is, some shipments from it will disappear).
+	@param vd Today's ShipmentLoss disruptions for this transportation link
     */
-    static double disruptShipments(SimState state, String name, SimpleDelay transDelay) {
+    static double disruptShipments(SimState state, String name, SimpleDelay transDelay, List<Disruption> vd) {
 	Disruptions.Type type = Disruptions.Type.ShipmentLoss;
 	double now = state.schedule.getTime();
 
 	double sumStolen = 0;
-	for(Disruption d:  ((Demo)state).hasDisruptionToday(type, name)) {
+	for(Disruption d: vd) {
 	    int m = (int)d.magnitude;
 	    
 	    //for(int j=0; j<m && transDelay.getAvailable()>0; j++) {
@@ -63,7 +64,7 @@ public class ShipmentLoss {
 
 		if (loseCnt >= m) break;
 	    }
-	    if (!Demo.quiet)  System.out.println("At t=" + now + ", Transport link  "+ name +", disruption '"+type+"' could affect up to " + m + " shipments out of "+nodes.length+" nodes; actually deleted " + loseCnt +" shipments "+
+	    if (!Demo.quiet())  System.out.println("At t=" + now + ", Transport link  "+ name +", disruption '"+type+"' could affect up to " + m + " shipments out of "+nodes.length+" nodes; actually deleted " + loseCnt +" shipments "+
 						     "("+nodeCnt+" nodes) "+
 						     "("+nowStolen+" u)");
 
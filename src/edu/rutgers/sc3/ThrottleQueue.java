@@ -157,7 +157,7 @@ public class ThrottleQueue extends sim.des.Queue    implements     Named
     /*
     public boolean accept(Provider provider, Resource r, double atLeast, double atMost) {
 	boolean z = super.accept( provider, r, atLeast, atMost);
-	if (Demo.verbose) {
+	if (Demo.verbose()) {
 	    if (r instanceof Batch) {
 		double t = state.schedule.getTime();       		
 		((Batch)r).addToMsg("["+getName()+".acc@"+t+", hb="+hasBatches()+"]");
@@ -210,9 +210,9 @@ public class ThrottleQueue extends sim.des.Queue    implements     Named
     public boolean provide(Receiver receiver) {
 	//public boolean offer(Receiver receiver) {
 	double now = state.schedule.getTime();
-	if (Demo.verbose) System.out.println("At t="+now+", " +getName() + ".provide()");
+	if (Demo.verbose()) System.out.println("At t="+now+", " +getName() + ".provide()");
 	if (getAvailable()==0 && autoReloading) {
-	    if (Demo.verbose) System.out.println(getName() + " call mkBatch");
+	    if (Demo.verbose()) System.out.println(getName() + " call mkBatch");
 	    whose.mkBatch();
 	}
 	if (getAvailable()==0) return false;
@@ -0,0 +1,81 @@
+package  edu.rutgers.supply;
+
+import java.io.*;
+import java.util.*;
+
+/** Writes chart data into a compact binary file (NAME.bin), which
+    is much faster to write than CSV, and takes less space. The format
+    is:
+<pre>
+    int    MAGIC ("SCB1")
+    bool   showTime
+    int    number of data columns m
+    UTF    name of each of the m columns
+    then, for each row:
+    double time (only if showTime)
+    double value, m times (NaN for a missing value)
+</pre>
+    All numbers are big-endian, as written by DataOutputStream. A
+    "blank line" is not recorded. Use read() to load such a file
+    back into memory.
+ */
+public class BinaryChartSink implements ChartSink {
+    static final int MAGIC = 0x53434231;
+    private final DataOutputStream out;
+    private boolean showTime = true;
+    private int m = -1;
+
+    public BinaryChartSink(File f) throws IOException {
+	out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1<<16));
+    }
+    
+    public void header(boolean _showTime, String[] names) throws IOException {
+	if (m>=0) throw new IOException("The header has already been written");
+	showTime = _showTime;
+	m = names.length;
+	out.writeInt(MAGIC);
+	out.writeBoolean(showTime);
+	out.writeInt(m);
+	for(String s: names) out.writeUTF(s);
+    }
+
+    public void row(double time, double[] values) throws IOException {
+	if (m<0) throw new IOException("No header has been written");
+	if (showTime) out.writeDouble(time);
+	for(int k=0; k<m; k++) {
+	    out.writeDouble(k<values.length? values[k] : Double.NaN);
+	}
+    }
+
+    public void blankLine() {}
+
+    public void close() throws IOException {
+	out.close();
+    }
+
+    /** Reads a file written by a BinaryChartSink */
+    public static MemoryChartSink read(File f) throws IOException {
+	String name = f.getName().replaceAll("\\.bin$", "");
+	MemoryChartSink s = new MemoryChartSink(name);
+	try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+	    if (in.readInt()!=MAGIC) throw new IOException("Not a binary chart file: " + f);
+	    boolean showTime = in.readBoolean();
+	    String[] names = new String[in.readInt()];
+	    for(int k=0; k<names.length; k++) names[k] = in.readUTF();
+	    s.header(showTime, names);
+	    if (!showTime && names.length==0) return s;
+	    double[] values = new double[names.length];
+	    while(true) {
+		double t;
+		try {
+		    t = showTime? in.readDouble(): 0;
+		    for(int k=0; k<values.length; k++) values[k] = in.readDouble();
+		} catch(EOFException ex) {
+		    break;
+		}
+		s.row(t, values);
+	    }
+	}
+	return s;
+    }
+}
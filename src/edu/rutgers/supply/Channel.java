@@ -10,7 +10,7 @@ import edu.rutgers.util.*;
 /** Describes the communication between 2 Pools. In SC2, a reference
     to a Channel is put into each Order object; this is used for
     internal accounting of various kinds. */
-public class Channel {
+public class Channel implements java.io.Serializable {
     /** A Pool or MedTech */
     final public BatchProvider2 sender;
     /** Typically a Delay object representing a shipping delay */
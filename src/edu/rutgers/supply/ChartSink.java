@@ -0,0 +1,36 @@
+package  edu.rutgers.supply;
+
+import java.io.*;
+
+/** The destination of the data rows written by a Charter. The
+    traditional destination is a CSV file (CsvChartSink); the
+    alternatives are an in-memory columnar store (MemoryChartSink),
+    which an optimizer can query after the run without any disk I/O
+    or number formatting, and a compact binary file (BinaryChartSink).
+
+    <p>Which kind of sink a given Charter uses is determined by the
+    sink rules in the current RunContext, matched against the name of
+    the charted object; see Charter.addSinkRule().
+ */
+public interface ChartSink {
+
+    /** The available kinds of sinks. NONE means that nothing is recorded. */
+    public enum Kind { CSV, MEMORY, BINARY, NONE };
+
+    /** Records the column names.
+	@param showTime Whether the rows will include a time stamp
+	@param names The names of the data columns (not including time)
+     */
+    void header(boolean showTime, String[] names) throws IOException;
+
+    /** Records a row of data.
+	@param time The time stamp, which is ignored if the header said showTime=false
+	@param values The data values
+     */
+    void row(double time, double[] values) throws IOException;
+
+    /** Marks a break in the data, e.g. between two runs (an empty line in a CSV file) */
+    void blankLine() throws IOException;
+
+    void close() throws IOException;
+}
@@ -7,8 +7,6 @@ import sim.engine.*;
 import sim.util.*;
 import sim.des.*;
 
-import edu.rutgers.util.Util;
-
 /** An auxiliary tool that's used to report something daily (or whenever it happens).
 
     <p>
@@ -54,26 +52,39 @@ replot
 For more examples, see charts.gnu.
 
  */
-public class Charter {
-    private PrintWriter w=null;
+public class Charter implements Serializable {
+    /** Where the data go; null if charting is turned off for this object.
+	This is not carried over into a model restored from a Snapshot,
+	so a forked run does not write any charts. */
+    private transient ChartSink w=null;
     /** The object which will print its data thru this Charter */
     private Named c;
     /** This thing will give us time stamps */
     private Schedule sch;
     
-    /** This is used so that we can close all files at  the end of simulation */
-    private static Set<Charter> allCharters = new HashSet<>();
-
-    /** The directory into which chart files are written */
-    private static File dir = new File(".");
+    /** The run context in which this Charter was created. Its list of
+	open charters is used so that we can close all files at the end
+	of simulation */
+    private transient RunContext ctx;
 
     /** Sets the output directory for chart files. It will be used by all
 	Charter objects to be created. This method should be called
 	before creating any Charter objects. 
+
+	<p>The directory is stored in the current RunContext, so that
+	concurrently executed runs can write their charts into
+	different directories.
+	
        @param _dir Directory into which all files will be written.
        Passing null turns off charting. */
     public static void setDir(File _dir) {
-	dir = _dir;
+	RunContext.get().chartDir = _dir;
+    }
+
+    /** @return the output directory for chart files in the current
+	RunContext, or null if charting is turned off */
+    public static File getDir() {
+	return RunContext.get().chartDir;
     }
 
     /** Creates a Charter object.
@@ -93,19 +104,73 @@ public class Charter {
 	c = _c;
 	
 	sch = schedule;
+	ctx = RunContext.get();
+	File dir = ctx.chartDir;
+	String name = c.getName();
+
+	ChartSink.Kind kind = (dir==null)? ChartSink.Kind.NONE: ChartSink.Kind.CSV;
+	for(RunContext.SinkRule r: ctx.sinkRules) {
+	    if (r.pattern.matcher(name).matches()) {
+		kind = r.kind;
+		break;
+	    }
+	}
 
-	if (dir==null) {
+	if (kind==ChartSink.Kind.NONE) {
 	    //if (Demo.verbose) System.out.println("Charting turned off");
 	    return;
+	} else if (kind==ChartSink.Kind.MEMORY) {
+	    MemoryChartSink m = new MemoryChartSink(name);
+	    ctx.memoryCharts.put(name, m);
+	    w = m;
+	    ctx.allCharters.add(this);
+	    return;
 	}
+
+	if (dir==null) throw new IllegalArgumentException("Cannot write a " + kind + " chart file for " + name + ", because no chart directory has been specified");
 	if (!dir.exists()) {
 	    if (!dir.mkdirs()) throw new IOException("Failed to create dir=" + dir);
 	}
 
-	File f = new File(dir, c.getName() + ".csv");
-	//if (Demo.verbose) System.out.println("DEBUG: open chart file name=" + f);
-	w = new PrintWriter(new FileWriter(f));
-	allCharters.add(this);
+	if (kind==ChartSink.Kind.BINARY) {
+	    w = new BinaryChartSink(new File(dir, name + ".bin"));
+	} else {
+	    File f = new File(dir, name + ".csv");
+	    //if (Demo.verbose) System.out.println("DEBUG: open chart file name=" + f);
+	    w = new CsvChartSink(f, showTime);
+	}
+	ctx.allCharters.add(this);
+    }
+
+    /** Adds a rule to the current RunContext, which will cause the
+	Charters for all objects whose names match the specified regular
+	expression to use the specified kind of sink. The rules are
+	checked in the order they were added, and the first matching
+	one is used. If no rule matches, the chart is written as a CSV
+	file, or not at all if there is no chart directory.
+	This should be called before creating any Charter objects.
+
+	@param regex A Java regular expression, to be matched against the entire name of the charted object, e.g. "EndCustomer.*"
+     */
+    public static void addSinkRule(String regex, ChartSink.Kind kind) {
+	RunContext.get().sinkRules.add(new RunContext.SinkRule(regex, kind));
+    }
+
+    /** Parses a rule of the form "kind:regex", e.g. "memory:EndCustomer.*",
+	and adds it with addSinkRule() */
+    public static void addSinkRule(String spec) {
+	int k = spec.indexOf(':');
+	if (k<0) throw new IllegalArgumentException("Chart sink rule should have the form kind:regex, e.g. memory:EndCustomer.*; found: " + spec);
+	ChartSink.Kind kind = Enum.valueOf(ChartSink.Kind.class, spec.substring(0,k).toUpperCase());
+	addSinkRule(spec.substring(k+1), kind);
+    }
+
+    /** Returns the in-memory chart recorded (in the current RunContext)
+	for the object with the specified name, or null if there is none.
+	This can be used after the end of the run.
+     */
+    public static MemoryChartSink getMemoryChart(String name) {
+	return RunContext.get().memoryCharts.get(name);
     }
 
     /** Prints the header of the CSV file. This should be called before
@@ -116,14 +181,21 @@ public class Charter {
      */
     public void printHeader(String... names) {
 	if (w==null) return;
-	String s = "#";
-	if (showTime) s += "time,";
-	w.println( s+		   String.join(",",   names));
+	try {
+	    w.header(showTime, names);
+	} catch(IOException ex) {
+	    throw new IllegalArgumentException("Error writing chart for " + c.getName() + ": " + ex);
+	}
     }
 
     /** Prints an empty line into the CSV file. */
     public void println() {
-	w.println();
+	if (w==null) return;
+	try {
+	    w.blankLine();
+	} catch(IOException ex) {
+	    throw new IllegalArgumentException("Error writing chart for " + c.getName() + ": " + ex);
+	}
     }
 	
 
@@ -135,21 +207,25 @@ public class Charter {
     */
     public void print(double... values) {
 	if (w==null) return;
-	String s = "";
-	if (showTime) s += "" + sch.getTime()+ ",";
-	w.println( s + Util.joinNonBlank(",",   values)); 
-	//w.flush();
+	try {
+	    w.row(sch.getTime(), values);
+	} catch(IOException ex) {
+	    throw new IllegalArgumentException("Error writing chart for " + c.getName() + ": " + ex);
+	}
     }
 
-    /** Closes the CSV file associated with this charter object, if it's still open open
+    /** Closes the chart file associated with this charter object, if it's still open open
 	@return true if the closing, in fact, needed to be done
      */
     synchronized boolean close() {
 	if (w==null) {
 	    return false;
 	} else {
-	    w.flush();
-	    w.close();
+	    try {
+		w.close();
+	    } catch(IOException ex) {
+		System.err.println("Error closing chart for " + c.getName() + ": " + ex);
+	    }
 	    w=null;
 	    return true;
 	}
@@ -161,10 +237,12 @@ public class Charter {
 
     /** Call ths from SimState.finish(), to ensure all files are
 	closed, and resources are deallocated. This should be done at the
-	end of the simulation.
+	end of the simulation. Only the files opened in the current
+	RunContext are closed.
     */
     public static void closeAll() {
 	int n= 0;
+	Set<Charter> allCharters = RunContext.get().allCharters;
 	for(Charter x: allCharters) {
 	    if (x.close())  n++;
 	}
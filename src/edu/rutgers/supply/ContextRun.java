@@ -0,0 +1,83 @@
+package  edu.rutgers.supply;
+
+import java.io.*;
+
+import sim.engine.*;
+
+import edu.rutgers.util.*;
+
+/** One simulation run, executed in the current thread with its own
+    RunContext. This is the common part of the tools that run many
+    simulations in one JVM (sc3.ReplicationRunner, sc2.ScenarioSweep,
+    test.MacroBench, and the concurrent trials of
+    pharma3.Pharma3DemoCoevProblem2).
+
+    <p>run() binds the context, creates the model with create(),
+    starts it, steps it while more() returns true, finishes it, and
+    returns the value of result(). Whatever happens, all charts are
+    closed and the context is unbound at the end. A subclass
+    supplies create() and result(), and may override the other hooks.
+*/
+public abstract class ContextRun<S extends SimState, R> {
+
+    /** The context to bind for this run, or null to run in the
+	context that the current thread already uses */
+    private final RunContext context;
+    /** The simulation time until which the model is stepped (unless more() is overridden) */
+    protected final double until;
+
+    /**
+       @param _context The context in which to run. If null, the
+       current thread's context is used, and is left as it is at the end.
+       @param _until The model is stepped while its time is not later than this
+     */
+    public ContextRun(RunContext _context, double _until) {
+	context = _context;
+	until = _until;
+    }
+
+    /** Creates the model. This is called with the run's context
+	already bound, so that the model's constructor sees it. */
+    protected abstract S create() throws IOException, IllegalInputException;
+
+    /** Called before sim.start() */
+    protected void beforeStart(S sim) {}
+
+    /** Is checked before each step.
+	@return true if the simulation should continue */
+    protected boolean more(S sim) {
+	return sim.schedule.getTime() <= until;
+    }
+
+    /** Called after the last step, before sim.finish() */
+    protected void beforeFinish(S sim) {}
+
+    /** Called after sim.finish(), to extract the result of the run */
+    protected abstract R result(S sim);
+
+    /** Executes the run. The model is stepped until more() returns
+	false, or until there is nothing left on the schedule. */
+    public R run() throws IOException, IllegalInputException {
+	if (context!=null) RunContext.bind(context);
+	try {
+	    S sim = create();
+	    beforeStart(sim);
+	    sim.start();
+	    Schedule schedule = sim.schedule;
+	    while(more(sim))	    {
+		sim.preSchedule();
+		if (!schedule.step(sim)) break;
+		sim.postSchedule();
+	    }
+	    beforeFinish(sim);
+	    sim.finish();
+	    return result(sim);
+	} finally {
+	    if (context!=null) {
+		// in case finish() was never reached
+		Charter.closeAll();
+		RunContext.unbind();
+	    }
+	}
+    }
+}
@@ -0,0 +1,41 @@
+package  edu.rutgers.supply;
+
+import java.io.*;
+
+import edu.rutgers.util.Util;
+
+/** Writes chart data into a CSV file, one line per row. This is the
+    traditional (and the default) format of our chart files, suitable
+    for gnuplot. */
+public class CsvChartSink implements ChartSink {
+    private final PrintWriter w;
+    private boolean showTime;
+
+    /** @param _showTime Print time in the first column? */
+    public CsvChartSink(File f, boolean _showTime) throws IOException {
+	w = new PrintWriter(new FileWriter(f));
+	showTime = _showTime;
+    }
+    
+    public void header(boolean _showTime, String[] names) {
+	showTime = _showTime;
+	String s = "#";
+	if (showTime) s += "time,";
+	w.println( s+		   String.join(",",   names));
+    }
+
+    public void row(double time, double[] values) {
+	String s = "";
+	if (showTime) s += "" + time+ ",";
+	w.println( s + Util.joinNonBlank(",",   values)); 
+    }
+
+    public void blankLine() {
+	w.println();
+    }
+
+    public void close() {
+	w.flush();
+	w.close();
+    }
+}
@@ -0,0 +1,98 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+
+/** Keeps track of the daily demand (or any other daily amount)
+    experienced by a pool, so that the total over the most recent
+    n days can be obtained in O(1) time.
+
+    <p>Internally, this is a ring buffer of prefix sums: the element
+    for day d contains the total amount recorded on days 1 through d.
+    Only the last few days' worth of prefix sums are kept, so the
+    memory use is bounded by the longest window that has been
+    declared (in the constructor, or with ensureWindow()), rather
+    than growing with the simulation length. Asking sum() about a
+    longer window is an error, even early in the run, when the data
+    happen to be still there, so that a missing declaration shows
+    up right away rather than once the ring has wrapped around.
+
+    <p>As in the old Vector-based code in sc2.Pool and pharma3.Pool,
+    day 0 is never included into any sum, and sum(day, n) covers
+    days day-n through day (both inclusive).
+ */
+public class DemandHistory {
+
+    /** prefix[d % prefix.length] = the total amount for days 1..d,
+	for firstDay &le; d &le; lastDay */
+    private double[] prefix;
+    /** The most recent day for which a prefix sum is stored */
+    private int lastDay = 0;
+    /** The earliest day for which a prefix sum is still stored */
+    private int firstDay = 0;
+
+    /** @param window The longest window (in days) that sum() will
+	be asked about. (It can be increased later with ensureWindow(),
+	as long as no old data have been discarded yet.)
+     */
+    public DemandHistory(int window) {
+	if (window < 0) throw new IllegalArgumentException("Negative window: " + window);
+	prefix = new double[window+2];
+    }
+
+    private int idx(int day) {
+	return day % prefix.length;
+    }
+
+    /** Makes sure that sum(day, n) can be computed for any n up to
+	the specified value. This should normally be called in the
+	constructor of the pool that uses this history.
+	@throws IllegalArgumentException if some of the data that would
+	be needed for such windows have already been discarded
+     */
+    public void ensureWindow(int n) {
+	if (n+2 <= prefix.length) return;
+	if (firstDay > 0) throw new IllegalArgumentException("Cannot extend demand history window to " + n + " days, as the data before day " + firstDay + " have already been discarded");
+	double[] a = new double[n+2];
+	for(int d=firstDay; d<=lastDay; d++) a[d % a.length] = prefix[idx(d)];
+	prefix = a;
+    }
+
+    /** Extends the prefix sums (with zero daily amounts) through the
+	specified day */
+    private void advanceTo(int day) {
+	while(lastDay < day) {
+	    double p = prefix[idx(lastDay)];
+	    lastDay++;
+	    prefix[idx(lastDay)] = p;
+	}
+	firstDay = Math.max(firstDay, lastDay - prefix.length + 1);
+    }
+
+    /** Adds the specified amount to the specified day's total.
+	Days must be recorded in chronological order.
+     */
+    public void record(int day, double amt) {
+	if (day <= 0) return;
+	if (day < lastDay) throw new IllegalArgumentException("Cannot record demand for day " + day + ", as the data through day " + lastDay + " have already been recorded");
+	advanceTo(day);
+	prefix[idx(day)] += amt;
+    }
+
+    /** The total for day k (0 or negative, or beyond lastDay) */
+    private double prefixAt(int k) {
+	if (k <= 0) return 0;
+	if (k > lastDay) return prefix[idx(lastDay)];
+	if (k < firstDay) throw new IllegalArgumentException("Demand history for day " + k + " has already been discarded");
+	return prefix[idx(k)];
+    }
+
+    /** The total amount for the days day-n through day (both
+	inclusive), excluding day 0.
+	@throws IllegalArgumentException if n exceeds the declared window
+     */
+    public double sum(int day, int n) {
+	if (n+2 > prefix.length) throw new IllegalArgumentException("Asked for the demand over " + n + " days, but the demand history only keeps " + (prefix.length-2) + " days; declare the longer window with ensureWindow(" + n + ") when the pool is created");
+	if (day <= 0) return 0;
+	return prefixAt(day) - prefixAt(day-n-1);
+    }
+}
@@ -0,0 +1,100 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+
+import sim.engine.*;
+
+import edu.rutgers.supply.Disruptions.Disruption;
+
+/** Delivers the disruptions from a Disruptions object to the
+    affected supply chain elements, as an alternative to having each
+    element poll Disruptions.hasToday() for each disruption type every
+    day.
+
+    <p>The dispatcher keeps a queue of pending deliveries, ordered by
+    day and then by the disruption's position in the scenario, and
+    schedules itself as a one-shot event for the next day on which
+    anything is to be delivered. On that day, each disruption in
+    effect is passed to the listener registered for its unit
+    name. Disruptions for which no listener has been registered are
+    ignored, just as they would be if nobody polled for them.
+
+    <p>The dispatcher is scheduled with a negative ordering, so that
+    it is executed before all supply chain elements stepped on the
+    same day. Since it is the only agent with that ordering, it does
+    not affect MASON's shuffling of agents, and thus does not change
+    the random number sequence of the simulation.
+ */
+public class DisruptionDispatcher implements Steppable {
+
+    /** The ordering with which the dispatcher is scheduled */
+    public static final int ORDERING = -1;
+
+    /** A pending delivery of a disruption (or a series) on a particular day */
+    private static class Delivery implements java.io.Serializable {
+	final double day;
+	final Disruption d;
+	Delivery(double _day, Disruption _d) {
+	    day = _day;
+	    d = _d;
+	}
+    }
+
+    private final Map<String,DisruptionListener> listeners;
+    /** Orders the deliveries by day. (A named class, rather than an
+	anonymous one, so that the queue can be serialized) */
+    private static class DeliveryOrder implements Comparator<Delivery>, java.io.Serializable {
+	public int compare(Delivery a, Delivery b) {
+	    return (a.day!=b.day)? Double.compare(a.day, b.day) :
+		Integer.compare(a.d.seq, b.d.seq);
+	}
+    }
+
+    private final PriorityQueue<Delivery> queue = new PriorityQueue<>(11, new DeliveryOrder());
+    /** The day for which this dispatcher has been scheduled, or NaN if none */
+    private double scheduledFor = Double.NaN;
+
+    /** @param data The disruptions (and series) to deliver
+	@param _listeners Maps unit names to listeners
+     */
+    DisruptionDispatcher(Vector<Disruption> data, Map<String,DisruptionListener> _listeners) {
+	listeners = _listeners;
+	for(Disruption d: data) {
+	    if (listeners.get(d.unitName)==null) continue;
+	    // Elements are stepped at the beginning of each day, so
+	    // the first day on which d is seen is the first integer
+	    // day no earlier than its start time
+	    double day = Math.max(0, Math.ceil(d.time));
+	    if (day < d.lastEnd()) queue.add(new Delivery(day, d));
+	}
+    }
+
+    /** Schedules this dispatcher for the first day on which it has
+	something to deliver, if any */
+    void scheduleNext(Schedule schedule) {
+	if (queue.isEmpty()) return;
+	double day = queue.peek().day;
+	if (day == scheduledFor) return;
+	scheduledFor = day;
+	schedule.scheduleOnce(day, ORDERING, this);
+    }
+
+    /** Delivers all disruptions in effect today, and re-queues those
+	that will still be in effect tomorrow */
+    public void step(SimState state) {
+	double now = state.schedule.getTime();
+	scheduledFor = Double.NaN;
+	Vector<Delivery> tomorrow = new Vector<>();
+	List<Disruption> v = new ArrayList<>(1);
+	while(!queue.isEmpty() && queue.peek().day <= now) {
+	    Delivery e = queue.poll();
+	    v.clear();
+	    e.d.addInstancesOn(now, v);
+	    DisruptionListener listener = listeners.get(e.d.unitName);
+	    for(Disruption d: v) listener.disruptionToday(d);
+	    if (now + 1 < e.d.lastEnd()) tomorrow.add(new Delivery(now+1, e.d));
+	}
+	queue.addAll(tomorrow);
+	scheduleNext(state.schedule);
+    }
+}
@@ -0,0 +1,18 @@
+package  edu.rutgers.supply;
+
+import edu.rutgers.supply.Disruptions.Disruption;
+
+/** A supply chain element implementing this interface can receive
+    disruptions from a DisruptionDispatcher, instead of having to poll
+    Disruptions.hasToday() every day.
+*/
+public interface DisruptionListener {
+    /** Called on each day on which the disruption d is in effect
+	(i.e. on the same days on which Disruptions.hasToday() would
+	have reported it), before any supply chain element is
+	stepped on that day. Multiple disruptions delivered on the same
+	day come in the same order in which hasToday() would have
+	listed them.
+     */
+    void disruptionToday(Disruption d);
+}
@@ -3,6 +3,8 @@ package  edu.rutgers.supply;
 import java.io.*;
 import java.util.*;
 
+import sim.engine.Schedule;
+
 import edu.rutgers.util.Util;
 import edu.rutgers.util.CsvData;
 import edu.rutgers.util.IllegalInputException;
@@ -30,9 +32,13 @@ import edu.rutgers.util.IllegalInputException;
     possibly, for a certain future period) appropriately. E.g. it may
     destroy some amount of a product in its storage facility, or it may
     mark itself as "out of service" for a specified amount of time.
+
+    <p>Alternatively, the disruptions can be pushed to the affected
+    elements, rather than polled by them: see schedule() and
+    DisruptionDispatcher.
 */
 
-public class Disruptions {
+public class Disruptions implements Serializable {
 
     /** Types of disruptions. The list is loosely based on Abhisekh's 21-point
         "disruption menu" from the summer of 2022.
@@ -125,7 +131,7 @@ public class Disruptions {
 	<p>
 	FIXME: Ought to replace "public" fields with getter methods
      */
-    public static class Disruption {
+    public static class Disruption implements Serializable {
 	/** What happens? (Shipment delay, destruction of stock, production stoppage...)
 	 */
 	final Type type;
@@ -151,18 +157,52 @@ public class Disruptions {
 	/** For how many day the disruption lasts. The default value is 1  */
 	final public double duration;
 
+	/** If this Disruption object describes a daily-repeating
+	    series of disruptions (as specified by the "timeStart-timeEnd"
+	    syntax in a scenario file), this is the start time of the last
+	    disruption in the series. For a single disruption, it is
+	    the same as time. */
+	final double lastTime;
+
+	/** The position of this disruption (or series) in the list of
+	    all disruptions in the scenario. This is used to report
+	    simultaneous disruptions in the same order in which they were
+	    added. */
+	int seq;
+
 	public double end() {
 	    return time + duration;
 	}
+
+	public Type getType() { return type; }
+	public String getUnitName() { return unitName; }
+
+	/** The end time of the last disruption in the series (or simply
+	    end(), for a single disruption) */
+	double lastEnd() {
+	    return lastTime + duration;
+	}
+
+	/** Is this a series of daily-repeating disruptions? */
+	boolean isSeries() {
+	    return lastTime != time;
+	}
 	
 	Disruption(Type _type, String _unitName, double _time, double _magnitude) {
 	    this(_type, _unitName, _time, 1, _magnitude);
 	}
 
 	Disruption(Type _type, String _unitName, double _time, double _duration, double _magnitude) {
+	    this(_type, _unitName, _time, _time, _duration, _magnitude);
+	}
+
+	/** Creates a single disruption, or a daily-repeating series of
+	    disruptions starting at _time, _time+1, ..., _lastTime */
+	Disruption(Type _type, String _unitName, double _time, double _lastTime, double _duration, double _magnitude) {
 	    type = _type;
 	    unitName = _unitName;
 	    time = _time;
+	    lastTime = _lastTime;
 
 	    // For backward compatibility with SC-1 and SC-2, where the duration
 	    // value was provided via the magnitude field
@@ -188,13 +228,45 @@ public class Disruptions {
 
 	}
 
+	/** Creates the disruption No. k (k=0, 1, ...) of a series. The
+	    constructor's backward-compatibility adjustments are not applied
+	    again, since they have already been applied to the series. */
+	private Disruption(Disruption series, int k) {
+	    type = series.type;
+	    unitName = series.unitName;
+	    time = lastTime = series.time + k;
+	    magnitude = series.magnitude;
+	    duration = series.duration;
+	    seq = series.seq;
+	}
+
+	/** Appends to v all disruptions from this series that
+	    are in effect at the specified time. For a single
+	    disruption, that's just the disruption itself, if it is on.
+	 */
+	void addInstancesOn(double now, List<Disruption> v) {
+	    if (!isSeries()) {
+		if (now >= time && now < end()) v.add(this);
+		return;
+	    }
+	    int kMax = (int)Math.floor(Math.min(now, lastTime) - time);
+	    int kMin = Math.max(0, (int)Math.floor(now - time - duration) + 1);
+	    for(int k=kMin; k<=kMax; k++) {
+		Disruption d = new Disruption(this, k);
+		if (now >= d.time && now < d.end()) v.add(d);
+	    }
+	}
+
 	public String toString() { 
-	    return "At " + time + ", " + type + "@" + unitName + ", magnitude=" + magnitude + ", lasts " + duration + " days";
+	    String s = isSeries()?
+		"Daily from " + time + " to " + lastTime: "At " + time;
+	    return s + ", " + type + "@" + unitName + ", magnitude=" + magnitude + ", lasts " + duration + " days";
 	}
 
 	/** #time,unit,type,duration,amount  */
 	public String toCsv() {
-	    Object [] v = {time, unitName, type, duration, magnitude};
+	    Object t = isSeries()? (Object)("" + time + "-" + lastTime) : (Object)time;
+	    Object [] v = {t, unitName, type, duration, magnitude};
 	    return Util.join(",", v);
 	}
    
@@ -203,6 +275,98 @@ public class Disruptions {
     /** The schedule of disruption events */
     private Vector<Disruption> data = new Vector<>();
 
+    /** All disruptions (and series of disruptions) of a particular type
+	affecting a particular unit, sorted by start time. Together with
+	the running maximum of the end times, this allows one to find all
+	disruptions in effect at a given time by a binary search,
+	followed by a short backward scan.
+     */
+    private static class Track implements Serializable {
+	final Disruption[] ds;
+	final double[] start;
+	/** maxEnd[j] = max(ds[0].lastEnd(), ..., ds[j].lastEnd()) */
+	final double[] maxEnd;
+
+	Track(Vector<Disruption> v) {
+	    ds = v.toArray(new Disruption[0]);
+	    // stable sort, so that equal start times keep the insertion order
+	    Arrays.sort(ds, new Comparator<Disruption>() {
+		    public int compare(Disruption a, Disruption b) {
+			return Double.compare(a.time, b.time);
+		    }
+		});
+	    start = new double[ds.length];
+	    maxEnd = new double[ds.length];
+	    double m = Double.NEGATIVE_INFINITY;
+	    for(int j=0; j<ds.length; j++) {
+		start[j] = ds[j].time;
+		m = Math.max(m, ds[j].lastEnd());
+		maxEnd[j] = m;
+	    }
+	}
+
+	/** Finds all disruptions in effect at the specified time */
+	List<Disruption> find(double now) {
+	    // the last element with start <= now
+	    int lo=0, hi=ds.length;
+	    while(lo<hi) {
+		int mid = (lo+hi) >>> 1;
+		if (start[mid] <= now) lo = mid+1;
+		else hi = mid;
+	    }
+	    List<Disruption> v = null;
+	    for(int j=lo-1; j>=0 && maxEnd[j] > now; j--) {
+		if (ds[j].lastEnd() <= now) continue;
+		if (v==null) v = new ArrayList<>(1);
+		ds[j].addInstancesOn(now, v);
+	    }
+	    if (v==null || v.isEmpty()) return Collections.emptyList();
+	    if (v.size()>1) {
+		Collections.sort(v, new Comparator<Disruption>() {
+			public int compare(Disruption a, Disruption b) {
+			    return (a.seq!=b.seq)? Integer.compare(a.seq, b.seq) :
+				Double.compare(a.time, b.time);
+			}
+		    });
+	    }
+	    return v;
+	}
+    }
+
+    /** Maps (type, unitName) to the list of matching disruptions. It is
+	built on the first lookup, and discarded whenever a new disruption
+	is added. It is volatile, because a single Disruptions object can
+	be shared by several concurrently executed simulation runs.
+     */
+    private volatile EnumMap<Type,HashMap<String,Track>> index = null;
+
+    private EnumMap<Type,HashMap<String,Track>> getIndex() {
+	EnumMap<Type,HashMap<String,Track>> h = index;
+	if (h!=null) return h;
+	synchronized(this) {
+	    if (index==null) {
+		EnumMap<Type,HashMap<String,Vector<Disruption>>> lists = new EnumMap<>(Type.class);
+		for(Disruption d: data) {
+		    HashMap<String,Vector<Disruption>> byUnit = lists.get(d.type);
+		    if (byUnit==null) lists.put(d.type, byUnit=new HashMap<>());
+		    Vector<Disruption> v = byUnit.get(d.unitName);
+		    if (v==null) byUnit.put(d.unitName, v=new Vector<>());
+		    v.add(d);
+		}
+		h = new EnumMap<>(Type.class);
+		for(Type type: lists.keySet()) {
+		    HashMap<String,Track> byUnit = new HashMap<>();
+		    for(Map.Entry<String,Vector<Disruption>> e: lists.get(type).entrySet()) {
+			byUnit.put(e.getKey(), new Track(e.getValue()));
+		    }
+		    h.put(type, byUnit);
+		}
+		index = h;
+	    }
+	    return index;
+	}
+    }
+    
     /** Are there any disruptions of the specified king scheduled for today?
 
 	<p>In SC-2 and before, 
@@ -212,20 +376,46 @@ public class Disruptions {
 	have arbitrary duration, the disruption is considered to be "on" a given
 	day if the beginning of the day falls within the range [t, t+duration).
 
+	<p>The lookup is done via an index keyed by (type, unitName), so
+	it takes O(log k) time, where k is the number of disruptions for
+	that key. 
+
 	@param type Matching disruptions have to be of this type
 	@param unitName Matching disruptions have to affect this unit
 	@param time Matching disruptions have to happen during this day. This is the beginning-of-the day timepoint, i.e. an integer.
+	@return The list of matching disruptions, in the order in which
+	they were added to the schedule. If there are none, a shared
+	immutable empty list is returned. 
      */
-    public Vector<Disruption> hasToday(Type type, String unitName, double time) {
-	Vector<Disruption> v = new Vector<>();
-	for(Disruption d: data) {
-	    if (d.type == type &&
-		time >= d.time && time < d.end() &&
-		d.unitName.equals(unitName)		) v.add(d);
-
-	}
+    public List<Disruption> hasToday(Type type, String unitName, double time) {
+	HashMap<String,Track> byUnit = getIndex().get(type);
+	if (byUnit==null) return Collections.emptyList();
+	Track track = byUnit.get(unitName);
+	if (track==null) return Collections.emptyList();
 	//System.out.println("Disruptions.hasToday("  +type+"@" +unitName + ", at " + time +") gives " + v.size());
-	return v;
+	return track.find(time);
+    }
+
+    /** Creates a DisruptionDispatcher that will deliver all
+	disruptions in this scenario to the listeners registered for
+	their units, and schedules it on the specified schedule. This is
+	an alternative to having each supply chain element call
+	hasToday() every day.
+	@param listeners Maps unit names to the supply chain elements
+	(or their components) that should be notified of the
+	disruptions affecting these units.
+     */
+    public DisruptionDispatcher schedule(Schedule schedule, Map<String,DisruptionListener> listeners) {
+	DisruptionDispatcher dispatcher = new DisruptionDispatcher(data, listeners);
+	dispatcher.scheduleNext(schedule);
+	return dispatcher;
+    }
+
+    /** Adds a Disruption event (or series) to the schedule */
+    private void add(Disruption d) {
+	d.seq = data.size();
+	data.add(d);
+	index = null;
     }
 
     /** Adds a Disruption event to this Disruptions object. This can be
@@ -234,7 +424,18 @@ public class Disruptions {
 	method since SC-3.
      */
     public void add(Type _type, String _unitName, double _time, double _duration, double _magnitude) {
-	data.add(new Disruption(_type, _unitName,  _time, _duration, _magnitude));
+	add(new Disruption(_type, _unitName,  _time, _duration, _magnitude));
+    }
+
+    /** Adds a series of disruption events, with the same parameters,
+	starting on days _time, _time+1, ..., up to and including
+	_lastTime.  This is the same as calling add() for each day
+	separately, but takes less memory, and makes lookups faster.
+     */
+    public void addDaily(Type _type, String _unitName, double _time, double _lastTime, double _duration, double _magnitude) {
+	int n = (int)Math.floor(_lastTime - _time);
+	if (n<0) n=0;
+	add(new Disruption(_type, _unitName,  _time, _time + n, _duration, _magnitude));
     }
     
     /** Exists for compatibility with SC-1 and SC-2 */
@@ -242,6 +443,14 @@ public class Disruptions {
     	add(_type, _unitName,  _time, 1.0, _magnitude);
     }
 
+    /** @return The start time of the earliest disruption in this
+	scenario, or +infinity if there are none */
+    public double earliestTime() {
+	double t = Double.POSITIVE_INFINITY;
+	for(Disruption d: data) t = Math.min(t, d.time);
+	return t;
+    }
+
     public String toString() {
 	return "Scheduled " + data.size() + " disruptions:\n" +
 	    Util.joinNonBlank("\n", data);
@@ -334,11 +543,10 @@ The method determines the format based on the header line, i.e. the first line o
 		throw new IllegalInputException("Invalid disruption type ("+ typeString+") in file "+h.readFrom+", data line no. " + j);
 	    }
 	    
-	    h.add(type, unit, tt[0], duration, magnitude);
 	    if (tt[1]!=null) {
-		for(double time=tt[0]+1; time<=tt[1]; time += 1) {
-		    h.add(type, unit, time, duration, magnitude);
-		}
+		h.addDaily(type, unit, tt[0], tt[1], duration, magnitude);
+	    } else {
+		h.add(type, unit, tt[0], duration, magnitude);
 	    }
 	}
 	
@@ -8,41 +8,78 @@ import sim.util.*;
 import sim.util.distribution.*;
 import sim.des.*;
 
+import ec.util.MersenneTwisterFast;
+
 /** An auxiliary class for computing certain derived distributions */
 public class DistributionUtil {
 
-    /** Estimated Max */
-    final double M;
-    //final AbstractContinousDistribution dis;
+    /** The number of values in the table used by nextAgedDouble() */
+    static final int N = 10000;
+
     final AbstractDistribution dis;
-    
-    public DistributionUtil(AbstractDistribution _dis) {
-	//if (!(_dis instanceof AbstractContinousDistribution)) throw new IllegalArgumentException();
-	//dis = (AbstractContinousDistribution)_dis;
+    /** Used, together with dis itself, by nextAgedDouble() */
+    final MersenneTwisterFast random;
+    /** A sample of the (absolute) values of dis, and the running
+	sums of these values; null if dis is exponential */
+    private final double[] x, cum;
+
+    /** Precomputes the table from which nextAgedDouble() will draw
+	values.
+	@param _dis The distribution of the lifetime of a device, e.g.
+	the time between failures
+	@param _random The generator used to draw aged values. This
+	should be the model's own (seeded) generator, so that the
+	runs are reproducible.
+     */
+    public DistributionUtil(AbstractDistribution _dis, MersenneTwisterFast _random) {
 	dis = _dis;
-	/*
-	double x = 1;
-	while(dis.cdf(x)<0.999) {
-	    if (x>1e6) throw new IllegalArgumentException("Cannot find max of " + dis);
-	    x *= 2;
+	random = _random;
+	if (dis instanceof Exponential) {
+	    // memoryless, so no table is needed
+	    x = cum = null;
+	    return;
 	}
-	M = x;
-	*/
-	double w = 1;
-	final int N = 1000;
+	x = new double[N];
+	cum = new double[N];
+	double s = 0;
 	for(int j=0; j<N; j++) {
-	    double x = dis.nextDouble();
-	    if (x>w) w=x;
+	    x[j] = Math.abs(dis.nextDouble());
+	    cum[j] = (s += x[j]);
 	}
-	M = 2*w;
-	
+	if (!(s>0)) throw new IllegalArgumentException("Cannot compute the residual life distribution for " + dis + ", since all its values are 0");
     }
 
+    /** Draws the remaining lifetime of a device which has already
+	been in service for an unknown amount of time, i.e. a value
+	from the equilibrium residual life distribution of a renewal
+	process whose lifetimes are distributed as dis. That
+	distribution has the density (1-F(x))/mu, where F and mu are
+	the cdf and the mean of dis. It is sampled as U*L, where U
+	is uniform on [0,1], and L is the lifetime of the device
+	that is in service at a random time point, i.e. a value of dis
+	selected with the probability proportional to its length.
+	The latter is drawn from the precomputed sample of dis, by a
+	binary search on the running sums, so each draw takes
+	O(log N) time. For an exponential dis, the residual life has
+	the same distribution as the lifetime itself.
+    */
     public double nextAgedDouble() {
-	double ago = Math.random() * M;
-	//double x;
-	while( (ago -= dis.nextDouble()) > 0) {}
-	return -ago;
-	   
+	if (x==null) return dis.nextDouble();
+	double r = random.nextDouble() * cum[N-1];
+	int k = Arrays.binarySearch(cum, r);
+	if (k<0) k = -k-1;
+	if (k>=N) k = N-1;
+	return random.nextDouble() * x[k];
+    }
+
+    /** Draws a random number from Binomial(n,p), using the specified
+	Binomial object (whose own parameters do not matter) as the
+	generator. The degenerate cases (n=0, p=0, p=1), which
+	Binomial itself refuses to deal with, are handled here.
+     */
+    public static int nextBinomial(Binomial b, int n, double p) {
+	if (n<=0 || p<=0) return 0;
+	if (p>=1) return n;
+	return b.nextInt(n, p);
     }
 }
@@ -0,0 +1,190 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.io.*;
+import java.security.*;
+
+import edu.rutgers.util.*;
+
+/** Memoizes the assessments (fitness values) computed by optimizers,
+    so that a genome that is evaluated again (e.g. an elite carried
+    over into the next generation, or a near-identical one generated
+    by CMA-ES) does not require another multi-year simulation run.
+
+    <p>An assessment is looked up by a key which is a hash of
+    everything that determines the outcome of the run: the parameter
+    vector (quantized, so that values that differ by less than the
+    quantum are treated as the same), the config (with any parameters
+    the optimizer has written into it), the disruption scenario, the
+    random seed, and the simulation horizon. The cache keeps the
+    most recently used entries, up to the specified capacity.
+
+    <p>Optionally, each new entry is also appended to a file, from
+    which the cache is loaded when it is created. This way, a
+    restarted optimization run can reuse the results of the earlier
+    one.
+
+    <p>Since the optimizers instantiate the model themselves (e.g.
+    sim.util.opt.MASONProblem, via reflection), the shared cache is
+    configured with Java system properties:
+    <pre>
+    -DevalCache.size=N      -- the capacity; 0 (the default) turns caching off
+    -DevalCache.horizon=T   -- the number of days each run lasts (required)
+    -DevalCache.file=F      -- the file for persistent storage (optional)
+    -DevalCache.quantum=q   -- the quantum for parameter values (default 1e-6)
+    </pre>
+    The horizon must be given explicitly, because the model does not
+    know, when it starts, how long the optimizer will run it.
+ */
+public class EvaluationCache {
+
+    /** The cached assessments, in the LRU order */
+    private final LinkedHashMap<String,double[]> map;
+    private final int capacity;
+    /** The simulation horizon, which is a part of every key */
+    public final double horizon;
+    /** Parameter values are rounded to multiples of this */
+    public final double quantum;
+    /** The file into which new entries are appended, or null */
+    private final File file;
+
+    /** Statistics */
+    private long hits=0, misses=0;
+
+    /**
+       @param _capacity The max number of entries
+       @param _horizon The number of days each run lasts
+       @param _quantum Parameter values are rounded to multiples of this
+       @param _file If not null, the entries stored in this file are
+       loaded, and the new ones are appended to it
+     */
+    public EvaluationCache(final int _capacity, double _horizon, double _quantum, File _file) throws IOException {
+	if (_capacity<=0) throw new IllegalArgumentException("Evaluation cache capacity must be positive; given " + _capacity);
+	if (!(_quantum>0)) throw new IllegalArgumentException("Evaluation cache quantum must be positive; given " + _quantum);
+	capacity = _capacity;
+	horizon = _horizon;
+	quantum = _quantum;
+	file = _file;
+	map = new LinkedHashMap<String,double[]>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String,double[]> e) {
+		    return size() > capacity;
+		}
+	    };
+	if (file!=null && file.exists()) load();
+    }
+
+    /** Reads the entries stored in the file. If the file holds more
+	entries than the cache can keep, it is rewritten with just the
+	retained ones, so that it does not grow without bound. */
+    private void load() throws IOException {
+	int n = 0;
+	BufferedReader r = new BufferedReader(new FileReader(file));
+	try {
+	    String s;
+	    while((s=r.readLine())!=null) {
+		s = s.trim();
+		if (s.length()==0 || s.startsWith("#")) continue;
+		String[] v = s.split(",");
+		double[] a = new double[v.length-1];
+		try {
+		    for(int j=0; j<a.length; j++) a[j] = Double.parseDouble(v[j+1]);
+		} catch(NumberFormatException ex) {
+		    throw new IOException("Invalid line in evaluation cache file " + file + ": " + s);
+		}
+		map.put(v[0], a);
+		n++;
+	    }
+	} finally {
+	    r.close();
+	}
+	if (n > map.size()) {
+	    PrintWriter w = new PrintWriter(new FileWriter(file));
+	    for(Map.Entry<String,double[]> e: map.entrySet()) w.println(line(e.getKey(), e.getValue()));
+	    w.close();
+	}
+    }
+
+    private static String line(String key, double[] a) {
+	StringBuffer s = new StringBuffer(key);
+	for(double x: a) s.append(",").append(x);
+	return s.toString();
+    }
+
+    /** Computes the key for a run.
+	@param params The optimizer's parameter vector
+	@param config The config, after the parameters have been applied to it
+	@param disruptions The disruption scenario (may be null)
+	@param seed The random seed of the run
+	@param extra Anything else that affects the assessment (e.g.
+	the names of the objectives), or null
+     */
+    public String key(double[] params, Config config, Disruptions disruptions, long seed, String extra) {
+	StringBuffer s = new StringBuffer();
+	s.append("horizon=").append(horizon).append("\n");
+	s.append("seed=").append(seed).append("\n");
+	s.append("quantum=").append(quantum).append("\nparams=");
+	for(double p: params) s.append(Math.round(p/quantum)).append(",");
+	s.append("\nextra=").append(extra).append("\n");
+	s.append("disruptions=").append(disruptions).append("\n");
+	if (config!=null) s.append(config.toCanonicalString());
+	try {
+	    byte[] h = MessageDigest.getInstance("SHA-256").digest(s.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+	    StringBuffer hex = new StringBuffer();
+	    for(byte b: h) hex.append(String.format("%02x", b));
+	    return hex.toString();
+	} catch(NoSuchAlgorithmException ex) {
+	    throw new AssertionError(ex);
+	}
+    }
+
+    /** @return A copy of the cached assessment, or null if there is none */
+    public synchronized double[] get(String key) {
+	double[] a = map.get(key);
+	if (a==null) misses++;
+	else hits++;
+	return (a==null)? null: a.clone();
+    }
+
+    /** Stores an assessment, and appends it to the file, if any */
+    public synchronized void put(String key, double[] assessment) {
+	map.put(key, assessment.clone());
+	if (file==null) return;
+	try {
+	    PrintWriter w = new PrintWriter(new FileWriter(file, true));
+	    w.println(line(key, assessment));
+	    w.close();
+	} catch(IOException ex) {
+	    System.err.println("Error writing evaluation cache file " + file + ": " + ex);
+	}
+    }
+
+    public synchronized String toString() {
+	return "[EvaluationCache: " + map.size() + "/" + capacity + " entries, " + hits + " hits, " + misses + " misses" +
+	    (file==null? "": ", file=" + file) + "]";
+    }
+
+    private static EvaluationCache shared = null;
+    private static boolean sharedInitialized = false;
+
+    /** @return The JVM-wide cache configured by the system properties
+	described above, or null if caching is off
+	@throws IllegalArgumentException If the properties are invalid
+     */
+    public static synchronized EvaluationCache getShared() {
+	if (sharedInitialized) return shared;
+	sharedInitialized = true;
+	int size = Integer.parseInt(System.getProperty("evalCache.size", "0"));
+	if (size<=0) return null;
+	String h = System.getProperty("evalCache.horizon");
+	if (h==null) throw new IllegalArgumentException("When evalCache.size is set, evalCache.horizon must be set as well");
+	String f = System.getProperty("evalCache.file");
+	double quantum = Double.parseDouble(System.getProperty("evalCache.quantum", "1e-6"));
+	try {
+	    shared = new EvaluationCache(size, Double.parseDouble(h), quantum,
+					 (f==null)? null: new File(f));
+	} catch(IOException ex) {
+	    throw new IllegalArgumentException("Cannot load evaluation cache: " + ex);
+	}
+	return shared;
+    }
+}
@@ -0,0 +1,103 @@
+package edu.rutgers.supply;
+
+import java.util.*;
+
+/** An index of the Batches stored in a Queue (or another Provider),
+    ordered by their expiration dates. It is maintained alongside the
+    Provider's own FIFO list of entities, and allows one to find all
+    (nearly) expired batches in O(k log n) time, k being the number
+    of such batches, rather than by scanning the entire list.
+
+    <p>The owner of the Provider must call add() and remove() whenever
+    it adds a batch to, or removes it from, its entities list. The
+    removal is "lazy": the batch is merely marked as gone, and its
+    heap entry is discarded once it comes to the top of the heap (or
+    during an occasional compaction). Batches that never expire are
+    not put into the heap at all.
+
+    <p>This relies on the expiration date of a stored batch staying
+    unchanged while the batch is in storage. (Splitting a batch does
+    not change it; merging only happens to batches that have been
+    taken out of storage; resetExpiration() is applied before a batch
+    is stored).
+ */
+public class ExpirationIndex implements java.io.Serializable {
+
+    private static class Entry implements java.io.Serializable {
+	final double expirationDate;
+	/** Used to break ties, so that batches with the same expiration
+	    date come out in the order in which they were stored */
+	final long seq;
+	final Batch b;
+	Entry(double _expirationDate, long _seq, Batch _b) {
+	    expirationDate = _expirationDate;
+	    seq = _seq;
+	    b = _b;
+	}
+    }
+
+    /** Orders the entries by expiration date. (A named class, rather
+	than an anonymous one, so that the heap can be serialized) */
+    private static class EntryOrder implements Comparator<Entry>, java.io.Serializable {
+	public int compare(Entry a, Entry b) {
+	    return (a.expirationDate!=b.expirationDate)?
+		Double.compare(a.expirationDate, b.expirationDate):
+		Long.compare(a.seq, b.seq);
+	}
+    }
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(11, new EntryOrder());
+    
+    /** The indexed batches that are still in storage */
+    private final Set<Batch> present = Collections.newSetFromMap(new IdentityHashMap<Batch,Boolean>());
+
+    private long seq = 0;
+
+    /** Should be called whenever a batch is put into storage */
+    public void add(Batch b) {
+	double d = b.getLot().getExpirationDate();
+	if (d == Double.POSITIVE_INFINITY) return;
+	present.add(b);
+	heap.add(new Entry(d, seq++, b));
+    }
+
+    /** Should be called whenever a batch is taken out of storage,
+	other than via pollExpiring() */
+    public void remove(Batch b) {
+	if (!present.remove(b)) return;
+	// Don't let the heap be clogged by stale entries of batches
+	// that were used up long before their expiration
+	if (heap.size() > 2*present.size() + 16) compact();
+    }
+
+    /** Discards the stale entries from the heap */
+    private void compact() {
+	Vector<Entry> keep = new Vector<>(present.size());
+	for(Entry e: heap) {
+	    if (present.contains(e.b)) keep.add(e);
+	}
+	heap.clear();
+	heap.addAll(keep);
+    }
+
+    /** Removes from the index, and returns, all stored batches that
+	will have expired within the specified number of days from now
+	(in the sense of Batch.willExpireSoon()).
+	@return The batches in question, in the order of their expiration dates. If there are none, an empty list is returned.
+    */
+    public List<Batch> pollExpiring(double now, double within) {
+	List<Batch> v = null;
+	while(!heap.isEmpty() && heap.peek().expirationDate <= now + within) {
+	    Batch b = heap.poll().b;
+	    if (!present.remove(b)) continue;
+	    if (v==null) v = new ArrayList<>();
+	    v.add(b);
+	}
+	return (v==null)? Collections.<Batch>emptyList(): v;
+    }
+
+    /** The number of indexed batches in storage */
+    public int size() {
+	return present.size();
+    }
+}
@@ -133,6 +133,49 @@ public class ExpiredSink extends MSink  {
     }
     
 
+    /** Purges all (nearly) expired batches from the specified
+	provider, with the help of an expiration-date index maintained
+	alongside the provider's entities list. Unlike
+	hasEnoughNonExpired(), this does not scan the list in search of
+	expired batches, but pulls them from the index, which takes
+	O(k log n) time for k expired batches. The expired batches are
+	consumed by this sink, and removed from the provider in a
+	single pass over the list, which stops as soon as all of them
+	have been found; since expired batches are typically near the
+	front of the queue, that pass is short.
+
+	@param entities The actual entities list from inside of Provider p
+	@param index The expiration-date index for the batches in entities
+	@return The total amount of underlying resource removed from the provider
+     */
+    public double purgeExpired(Provider p, LinkedList<Entity> entities, ExpirationIndex index) {
+	double t = state.schedule.getTime();
+	List<Batch> bad = index.pollExpiring(t, spareDays);
+	if (bad.isEmpty()) return 0;
+
+	if (bad.size()==1) {
+	    if (!entities.remove(bad.get(0))) throw new AssertionError();
+	} else {
+	    Set<Batch> badSet = Collections.newSetFromMap(new IdentityHashMap<Batch,Boolean>());
+	    badSet.addAll(bad);
+	    int found = 0;
+	    for(Iterator<Entity> it = entities.iterator(); found<bad.size() && it.hasNext(); ) {
+		if (badSet.contains(it.next())) {
+		    it.remove();
+		    found++;
+		}
+	    }
+	    if (found<bad.size()) throw new AssertionError();
+	}
+
+	double removedAmt = 0;
+	for(Batch b: bad) {
+	    if (!accept(p, b, 1, 1)) throw new AssertionError();
+	    removedAmt += b.getContentAmount();
+	}
+	return removedAmt;
+    }
+
     /** @return A short stats message, or an empty string if nothing has ever been discarded as expired */
     public String reportShort() {
 	return (everConsumed==0)? "" : "(Discarded expired=" + everConsumed + " u = " + everConsumedBatches + " ba)";
@@ -13,7 +13,7 @@ import edu.rutgers.util.IllegalInputException;
 
 /** Just prints a predefined line of text. This is used as part of a complex report.
 */
-public class Filler implements Reporting {
+public class Filler implements Reporting, java.io.Serializable {
 
     final String text;
 
@@ -17,14 +17,14 @@ import sim.des.*;
     contamination that wasn't caught by the normal QA process).
 */
 
-public class LotInfo {
+public class LotInfo implements java.io.Serializable {
 
-    /** Used to generate unique sequential lot numbers */
-    private static long lotNoGen = 0;
-
-    /** Generates a unique lot number, which then can be assigned to a new lot */
+    /** Generates a unique lot number, which then can be assigned to a
+	new lot. The numbers are sequential within the current
+	RunContext (i.e. within one simulation run).
+    */
     private static long nextLotNo() {
-	return ++lotNoGen;
+	return ++RunContext.get().lotNoGen;
 	
     }
 
@@ -38,6 +38,7 @@ public class LotInfo {
     /** The expiration date of this lot. If the product never expire,
 	we store Double.POSITIVE_INFINITY here */
     double expirationDate;
+    public double getExpirationDate() { return expirationDate; }
 
     /** The earliest of the dates on which the "ancestors" of this lot
 	were manufactured, or, absent any, the lots own manufacturing
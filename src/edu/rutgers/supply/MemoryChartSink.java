@@ -0,0 +1,87 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+
+/** Keeps chart data in memory, in a columnar form: one growable
+    double[] array per column. Nothing is formatted or written to
+    disk. After the run, the data can be obtained with
+    Charter.getMemoryChart(name), and then getColumn().
+ */
+public class MemoryChartSink implements ChartSink, java.io.Serializable {
+    /** The name of the charted object */
+    public final String name;
+    private String[] names = new String[0];
+    private boolean showTime = true;
+    private double[] times = new double[16];
+    private double[][] columns = new double[0][];
+    private int n = 0;
+
+    MemoryChartSink(String _name) {
+	name = _name;
+    }
+    
+    public void header(boolean _showTime, String[] _names) {
+	showTime = _showTime;
+	names = _names.clone();
+    }
+
+    /** Makes sure we have at least m columns, with room for at least
+	n+1 rows. A column that first appears after some rows have
+	been recorded has no values for those rows, so it is filled
+	with NaN up to row n. */
+    private void ensureCapacity(int m) {
+	if (columns.length < m) {
+	    double[][] c = Arrays.copyOf(columns, m);
+	    for(int k=columns.length; k<m; k++) {
+		c[k] = new double[times.length];
+		Arrays.fill(c[k], 0, n, Double.NaN);
+	    }
+	    columns = c;
+	}
+	if (n == times.length) {
+	    int cap = 2*times.length;
+	    times = Arrays.copyOf(times, cap);
+	    for(int k=0; k<columns.length; k++) columns[k] = Arrays.copyOf(columns[k], cap);
+	}
+    }
+    
+    public void row(double time, double[] values) {
+	ensureCapacity(values.length);
+	times[n] = showTime? time: n;
+	for(int k=0; k<values.length; k++) columns[k][n] = values[k];
+	// columns that are missing from this row
+	for(int k=values.length; k<columns.length; k++) columns[k][n] = Double.NaN;
+	n++;
+    }
+
+    public void blankLine() {}
+
+    public void close() {}
+
+    /** The number of rows recorded */
+    public int size() { return n; }
+
+    /** The column names, as given in the header */
+    public String[] getNames() { return names.clone(); }
+
+    /** The time stamps of all rows (or the row numbers, if the
+	Charter did not print time) */
+    public double[] getTimes() {
+	return Arrays.copyOf(times, n);
+    }
+
+    /** The values of the k-th data column (k=0 being the first column
+	after time) */
+    public double[] getColumn(int k) {
+	if (k<0 || k>=columns.length) throw new IllegalArgumentException("No column " + k + " in chart " + name);
+	return Arrays.copyOf(columns[k], n);
+    }
+
+    /** The values of the named data column */
+    public double[] getColumn(String colName) {
+	for(int k=0; k<names.length; k++) {
+	    if (names[k].equals(colName)) return getColumn(k);
+	}
+	throw new IllegalArgumentException("No column named '" + colName + "' in chart " + name);
+    }
+}
@@ -0,0 +1,149 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.lang.management.*;
+
+import sim.engine.*;
+import sim.des.*;
+
+/** An opt-in profiler for the supply chain nodes of a simulation
+    run. Each node's step() method can be wrapped (with wrap()) so
+    that the cumulative time, number of calls, and the amount of
+    memory allocated inside it are recorded. Additionally, Receivers
+    can report the offers they handle (with countOffer()), so that
+    the number of offers and accepted offers is recorded for each of
+    them.
+
+    <p>A profiler is attached to the current RunContext with
+    setCurrent(), and should be detached (with setCurrent(null)) at
+    the end of the run. When no profiler is attached to any context,
+    the countOffer() calls cost only a check of a static counter, and
+    no wrapping is done, so that the instrumentation has next to no
+    overhead.
+
+    <p>The times are inclusive: e.g. the time of a production unit's
+    step() includes the time of the accept() calls on the downstream
+    nodes to which it ships its product. The percentages are of the
+    wall-clock time elapsed since the profiler was created, and are
+    not meant to add up to 100.
+ */
+public class NodeProfiler {
+
+    /** The number of run contexts that have a profiler attached;
+	while it is 0, countOffer() does not even need to look up the
+	current context */
+    private static final java.util.concurrent.atomic.AtomicInteger attached = new java.util.concurrent.atomic.AtomicInteger();
+
+    /** The stats for one node */
+    static class Entry {
+	final String name;
+	long ns=0, calls=0, allocBytes=0, offers=0, accepts=0;
+	Entry(String _name) { name = _name; }
+    }
+
+    private final HashMap<String,Entry> entries = new HashMap<>();
+
+    /** Used to measure allocation; null if the JVM does not support that */
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /** When this profiler was created, i.e. (roughly) when the run started */
+    private final long startNs = System.nanoTime();
+
+    public NodeProfiler() {
+	ThreadMXBean tb = ManagementFactory.getThreadMXBean();
+	com.sun.management.ThreadMXBean b = null;
+	if (tb instanceof com.sun.management.ThreadMXBean) {
+	    b = (com.sun.management.ThreadMXBean)tb;
+	    if (b.isThreadAllocatedMemorySupported()) b.setThreadAllocatedMemoryEnabled(true);
+	    else b = null;
+	}
+	threadBean = b;
+    }
+
+    /** Attaches the specified profiler (or null, for none) to the
+	current RunContext */
+    public static void setCurrent(NodeProfiler p) {
+	RunContext ctx = RunContext.get();
+	if (ctx.profiler==null && p!=null) attached.incrementAndGet();
+	else if (ctx.profiler!=null && p==null) attached.decrementAndGet();
+	ctx.profiler = p;
+    }
+
+    /** @return the profiler attached to the current RunContext, or null */
+    public static NodeProfiler getCurrent() {
+	return (attached.get()>0)? RunContext.get().profiler : null;
+    }
+
+    private Entry entry(String name) {
+	Entry e = entries.get(name);
+	if (e==null) entries.put(name, e = new Entry(name));
+	return e;
+    }
+
+    private long allocated() {
+	return (threadBean==null)? 0: threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Creates a Steppable that calls z.step(), and records how
+	much time and memory it took. */
+    public Steppable wrap(String name, final Steppable z) {
+	final Entry e = entry(name);
+	return new Steppable() {
+	    public void step(SimState state) {
+		long a0 = allocated();
+		long t0 = System.nanoTime();
+		try {
+		    z.step(state);
+		} finally {
+		    e.ns += System.nanoTime() - t0;
+		    e.allocBytes += allocated() - a0;
+		    e.calls++;
+		}
+	    }
+	};
+    }
+
+    /** Records an offer handled by a Receiver, if a profiler is
+	attached to the current run context. This should be called
+	at the end of the Receiver's accept() method.
+	@param accepted The value that accept() is about to return
+	@return accepted
+     */
+    public static boolean countOffer(Named receiver, boolean accepted) {
+	NodeProfiler p = getCurrent();
+	if (p!=null) {
+	    Entry e = p.entry(receiver.getName());
+	    e.offers++;
+	    if (accepted) e.accepts++;
+	}
+	return accepted;
+    }
+
+    /** A table of all nodes, the most time-consuming ones first */
+    public String report() {
+	Vector<Entry> v = new Vector<>(entries.values());
+	Collections.sort(v, new Comparator<Entry>() {
+		public int compare(Entry a, Entry b) {
+		    int c = Long.compare(b.ns, a.ns);
+		    if (c==0) c = Long.compare(b.offers, a.offers);
+		    return c!=0? c: a.name.compareTo(b.name);
+		}
+	    });
+	long wallNs = System.nanoTime() - startNs;
+
+	StringBuffer s = new StringBuffer();
+	s.append("Node profile over " + String.format("%.1f", wallNs*1e-6) + " ms of wall time (step() times include nested calls, and % is of the wall time):\n");
+	s.append(String.format("%-40s %10s %6s %10s %10s %12s %10s %10s\n",
+			       "node", "ms", "%wall", "calls", "ns/call", "alloc MB", "offers", "accepts"));
+	for(Entry e: v) {
+	    s.append(String.format("%-40s %10.1f %6.1f %10d %10.0f %12.2f %10d %10d\n",
+				   e.name, e.ns*1e-6,
+				   (wallNs==0? 0: 100.0*e.ns/wallNs),
+				   e.calls,
+				   (e.calls==0? 0: (double)e.ns/e.calls),
+				   e.allocBytes/(1024.0*1024.0),
+				   e.offers, e.accepts));
+	}
+	return s.toString();
+    }
+}
@@ -19,7 +19,7 @@ import edu.rutgers.util.ParaSet;
     </ul>
     
  */
-public class OnOrder {
+public class OnOrder implements java.io.Serializable {
     /** After how many days unfilled orders expire (i.e. are treated
 	as if they are never going to be fulfilled, so that it's OK to
 	reorder).
@@ -31,10 +31,20 @@ public class OnOrder {
     }
     
 
-    /** Assumed to be ordered chronologically (by construction) */
-    public Vector<Order> data = new Vector<>();
+    /** Outstanding (unexpired, unfilled) orders. Assumed to be
+	ordered chronologically (by construction), so that new orders
+	go to the tail, and both filling and expiration happen at the
+	head. */
+    private final ArrayDeque<Order> data = new ArrayDeque<>();
     /** Expired ordered that weren't fulfilled even with a delay. */
-    Vector<Order> expired = new Vector<>();
+    private final ArrayDeque<Order> expired = new ArrayDeque<>();
+
+    /** The running total of the amounts of all orders in data[],
+	so that sum() does not need to scan the list */
+    private double outstandingSum = 0;
+    /** The running total of the (remaining) amounts of all orders in
+	expired[] */
+    private double expiredSum = 0;
 
     /** Sum of orders that were removed as "expired" */
     double totalRemoved = 0;
@@ -48,7 +58,20 @@ public class OnOrder {
     
     
     public void add(Order e) {
-	data.add(e);
+	data.addLast(e);
+	outstandingSum += e.amount;
+    }
+
+    /** The outstanding (unexpired, unfilled) orders, oldest first.
+	This is a read-only view, used for reporting.
+     */
+    public Collection<Order> getOutstanding() {
+	return Collections.unmodifiableCollection(data);
+    }
+
+    /** The number of outstanding orders */
+    public int size() {
+	return data.size();
     }
 
     /** Returns the list of orders that became "filled" amd removed
@@ -66,30 +89,34 @@ public class OnOrder {
     */
     public double subtract(double now, double amt) {
 	lastFilled.clear();
-	while( amt>0 && data.size()>0) {
-	    Order e = data.get(0);
+	while( amt>0 && !data.isEmpty()) {
+	    Order e = data.peekFirst();
 	    double x = e.amount;
 	    if (x <= amt) {
 		e.filledDate = now;
 		lastFilled.add(e);
-		data.removeElementAt(0);
+		data.pollFirst();
+		outstandingSum -= x;
 		amt -= x;		    
 	    } else {
-		data.get(0).amount -= amt;
+		e.amount -= amt;
+		outstandingSum -= amt;
 		amt = 0;
 	    }
 	}
+	// Don't let the rounding errors accumulate
+	if (data.isEmpty()) outstandingSum = 0;
 
 	double amtLate = amt;
 
-	while( amt>0 && expired.size()>0) {
-	    Order e = expired.get(0);
+	while( amt>0 && !expired.isEmpty()) {
+	    Order e = expired.peekFirst();
 	    double x = e.amount;
 	    double r =0;
 	    if (x <= amt) {
 		e.filledDate = now;
 		lastFilled.add(e);
-		expired.removeElementAt(0);
+		expired.pollFirst();
 		r = x;
 	    } else {		
 		e.amount -= amt;
@@ -97,11 +124,13 @@ public class OnOrder {
 	    }
 	    //	    System.out.println("DEBUG: applying late shipment of " + r + " against expired order dated " + e.date);
 	    amt -= r;		    
+	    expiredSum -= r;
 	    totalLateArrivals  += r;
 	    double delay = now - (e.date + expiration);
 	    if (delay<=0) throw new AssertionError();
 	    delaySum += r*delay;
 	}
+	if (expired.isEmpty()) expiredSum = 0;
 
 	//if (amt>0) System.out.println("DEBUG: orphan shipment of " + amt);
 
@@ -110,28 +139,37 @@ public class OnOrder {
 	
     }
 
-    /** Removes any expired orders
-	@return the total size of the removed orders
+    /** Removes any expired orders. Since the orders are kept in
+	chronological order, this only needs to look at the head of
+	the list, and stops at the first unexpired order.
+	@return the removed orders
      */
     public Vector<Order> refresh(double now) {
 	double removed = 0;
 	Vector<Order> eo = new Vector<>();
-	while( data.size()>0  && data.get(0).date + expiration <now) {
-	    Order e = data.get(0);
-	    data.removeElementAt(0);
+	while( !data.isEmpty()  && data.peekFirst().date + expiration <now) {
+	    Order e = data.pollFirst();
 	    removed += e.amount;
-	    expired.add(e);
+	    expired.addLast(e);
 	    eo.add(e);
 	    e.channel.sender.cancel(e);
 	}
+	outstandingSum -= removed;
+	if (data.isEmpty()) outstandingSum = 0;
+	expiredSum += removed;
 	totalRemoved += removed;
 	return eo; // removed;
     }
 
+    /** The total amount of outstanding (unexpired, unfilled) orders */
     public double sum() {
-	double s = 0;
-	for(Order e: data) s += e.amount;
-	return s;
+	return outstandingSum;
+    }
+
+    /** The total remaining amount of expired orders that have not
+	been matched by late arrivals yet */
+    public double expiredSum() {
+	return expiredSum;
     }
 
     public String toString() {
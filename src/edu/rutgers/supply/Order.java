@@ -10,12 +10,10 @@ import java.util.*;
     for managing order expiration on the receiver end (when an ordered
     shipment never arrives, e.g. due to some disruption).
  */
-public class Order implements Cloneable {
+public class Order implements Cloneable, java.io.Serializable {
 
-    /** Used to generate globally unique order ID numbers */
-    private static long lastId = 0;
-
-    /** A globally unique ID number of this order */
+    /** A unique (within the current RunContext, i.e. the current
+	simulation run) ID number of this order */
     final public long id;
     /** When this order was placed */
     final public double date;
@@ -35,7 +33,7 @@ public class Order implements Cloneable {
 	date = _date;
 	amount0 = amount = _amount;
 	channel = _channel;
-	id = (lastId++);
+	id = (RunContext.get().lastOrderId++);
     }
 
     /** Makes a shallow copy of this Order. This is all we need, as
@@ -42,7 +42,7 @@ import edu.rutgers.util.ParaSet;
 	
     </ol>
 */
-class PrototypeInfo {
+class PrototypeInfo implements java.io.Serializable {
 
 	/** If true, this is an "inherits expiration" product, whose
 	expiration date of this product is set based on the earliest
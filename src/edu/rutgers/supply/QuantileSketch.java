@@ -0,0 +1,164 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.text.*;
+
+/** A compact, mergeable summary of the distribution of a
+    non-negative quantity (such as waiting times), from which
+    quantiles (median, p90, p99, ...) can be estimated without
+    storing all individual values.
+
+    <p>This is a relative-error sketch (in the style of DDSketch):
+    positive values are counted in logarithmically spaced buckets,
+    bucket i covering the range (gamma<sup>i-1</sup>, gamma<sup>i</sup>],
+    with gamma=(1+alpha)/(1-alpha). Any quantile estimate is then
+    within the relative error alpha of the true value. Values below
+    MIN_POSITIVE (e.g. zero waiting times) are counted separately, and
+    are reported as 0.
+
+    <p>Values may be weighted (e.g. by the order size). Two sketches
+    with the same alpha can be merged by simply adding bucket
+    counts; the result does not depend on the order of merging, so
+    merging the sketches of several customers, or of several
+    replications, is deterministic.
+ */
+public class QuantileSketch implements Cloneable, java.io.Serializable {
+
+    /** Values smaller than this are treated as zero */
+    static final double MIN_POSITIVE = 1e-6;
+
+    /** The default relative accuracy */
+    public static final double DEFAULT_ALPHA = 0.01;
+
+    /** Relative accuracy of quantile estimates */
+    final double alpha;
+    private final double gamma, logGamma;
+
+    /** The total weight of values below MIN_POSITIVE */
+    private double zeroCount = 0;
+    /** counts[i] is the total weight in bucket (offset+i) */
+    private double[] counts = new double[0];
+    private int offset = 0;
+    /** The total weight of all values */
+    private double total = 0;
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+	this(DEFAULT_ALPHA);
+    }
+
+    /** @param _alpha Relative accuracy, e.g. 0.01 for 1% */
+    public QuantileSketch(double _alpha) {
+	if (!(_alpha > 0 && _alpha < 1)) throw new IllegalArgumentException("Invalid sketch accuracy: " + _alpha);
+	alpha = _alpha;
+	gamma = (1+alpha)/(1-alpha);
+	logGamma = Math.log(gamma);
+    }
+
+    /** The total weight of all values added so far */
+    public double getCount() {
+	return total;
+    }
+
+    public void add(double x) {
+	add(x, 1);
+    }
+
+    /** Adds a value with the specified weight (e.g. the number of
+	units in an order) */
+    public void add(double x, double w) {
+	if (Double.isNaN(x) || x<0) throw new IllegalArgumentException("Cannot add a negative value to the sketch: " + x);
+	if (w<=0) {
+	    if (w==0) return;
+	    throw new IllegalArgumentException("Negative weight: " + w);
+	}
+	if (x < MIN_POSITIVE) {
+	    zeroCount += w;
+	} else {
+	    int k = (int)Math.ceil(Math.log(x)/logGamma);
+	    ensureBucket(k);
+	    counts[k-offset] += w;
+	}
+	total += w;
+	min = Math.min(min, x);
+	max = Math.max(max, x);
+    }
+
+    /** Grows the counts[] array, if needed, so that it includes bucket k */
+    private void ensureBucket(int k) {
+	if (counts.length==0) {
+	    counts = new double[16];
+	    offset = k - 8;
+	    return;
+	}
+	if (k >= offset && k < offset+counts.length) return;
+	int lo = Math.min(offset, k), hi = Math.max(offset+counts.length, k+1);
+	// leave some room for growth on the side where we grow
+	int n = Math.max(hi - lo, 2*counts.length);
+	if (k < offset) lo = hi - n;
+	double[] a = new double[n];
+	System.arraycopy(counts, 0, a, offset-lo, counts.length);
+	counts = a;
+	offset = lo;
+    }
+
+    /** Adds all values from another sketch into this one.
+	@param o A sketch with the same accuracy as this one
+     */
+    public void merge(QuantileSketch o) {
+	if (o.alpha != alpha) throw new IllegalArgumentException("Cannot merge sketches with different accuracy: " + alpha + " vs. " + o.alpha);
+	if (o.total==0) return;
+	zeroCount += o.zeroCount;
+	for(int i=0; i<o.counts.length; i++) {
+	    if (o.counts[i]==0) continue;
+	    int k = o.offset + i;
+	    ensureBucket(k);
+	    counts[k-offset] += o.counts[i];
+	}
+	total += o.total;
+	min = Math.min(min, o.min);
+	max = Math.max(max, o.max);
+    }
+
+    /** Estimates the q-th quantile of the values added so far.
+	@param q A number between 0 and 1, e.g. 0.9 for p90
+	@return the estimate, or NaN if the sketch is empty
+     */
+    public double quantile(double q) {
+	if (!(q>=0 && q<=1)) throw new IllegalArgumentException("Invalid quantile: " + q);
+	if (total==0) return Double.NaN;
+	if (q==0) return min;
+	if (q==1) return max;
+	double rank = q*total;
+	double cum = zeroCount;
+	if (cum >= rank) return 0;
+	for(int i=0; i<counts.length; i++) {
+	    cum += counts[i];
+	    if (cum >= rank) {
+		double v = 2*Math.pow(gamma, offset+i)/(gamma+1);
+		return Math.max(min, Math.min(max, v));
+	    }
+	}
+	return max;
+    }
+
+    public QuantileSketch copy() {
+	try {
+	    QuantileSketch c = (QuantileSketch)clone();
+	    c.counts = counts.clone();
+	    return c;
+	} catch(CloneNotSupportedException ex) {
+	    throw new AssertionError();
+	}
+    }
+
+    /** Reports the median, p90, and p99 */
+    public String toString() {
+	if (total==0) return "(empty)";
+	DecimalFormat df = new DecimalFormat("0.##");
+	return "p50=" + df.format(quantile(0.5)) +
+	    ", p90=" + df.format(quantile(0.9)) +
+	    ", p99=" + df.format(quantile(0.99));
+    }
+
+}
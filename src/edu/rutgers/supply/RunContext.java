@@ -0,0 +1,119 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.io.*;
+
+/** A RunContext holds the mutable "per-simulation-run" state that
+    used to be stored in JVM-wide static variables: the lot number and
+    order ID generators, the chart output directory, the list of open
+    Charter objects, and the console verbosity flags.
+
+    <p>By default, all threads share a single global RunContext, so
+    that a conventional program that runs one simulation at a time
+    (possibly, with the simulation running in the GUI's own thread)
+    behaves exactly as before. A tool that runs several simulations
+    concurrently (such as sc3.ReplicationRunner) creates a separate
+    RunContext for each run, and binds it to the thread that executes
+    that run, with bind(); all code executed in that thread will then
+    see that run's private context.
+*/
+public class RunContext {
+
+    /** The contexts bound to particular threads. This must be
+	initialized before global, whose constructor looks at it. */
+    private static final ThreadLocal<RunContext> bound = new ThreadLocal<>();
+
+    /** The context used by all threads that have not bound their own */
+    private static final RunContext global = new RunContext(new File("."), false, false);
+
+    /** Returns the context that the current thread should use: the
+	one bound to it by bind(), if any, or else the global one. */
+    public static RunContext get() {
+	RunContext c = bound.get();
+	return (c==null)? global : c;
+    }
+
+    /** Makes the specified context the current one for the current
+	thread, until unbind() is called. */
+    public static void bind(RunContext c) {
+	bound.set(c);
+    }
+
+    /** Reverts the current thread to using the global context */
+    public static void unbind() {
+	bound.remove();
+    }
+
+    /** Used to generate unique sequential lot numbers (LotInfo) */
+    long lotNoGen = 0;
+    /** Used to generate unique order ID numbers (Order) */
+    long lastOrderId = 0;
+
+    /** The directory into which chart files are written, or null
+	if charting is turned off */
+    File chartDir;
+    /** This is used so that we can close all chart files at the end of
+	the simulation */
+    final Set<Charter> allCharters = new HashSet<>();
+
+    /** A rule that selects the kind of ChartSink for the charted
+	objects whose names match a pattern */
+    static class SinkRule {
+	final java.util.regex.Pattern pattern;
+	final ChartSink.Kind kind;
+	SinkRule(String regex, ChartSink.Kind _kind) {
+	    pattern = java.util.regex.Pattern.compile(regex);
+	    kind = _kind;
+	}
+    }
+
+    /** Chart sink selection rules, in the order of priority */
+    final Vector<SinkRule> sinkRules = new Vector<>();
+
+    /** The in-memory charts recorded in this context, keyed by the
+	name of the charted object. They stay here after closeAll(),
+	so that they can be examined after the end of the run. */
+    final HashMap<String,MemoryChartSink> memoryCharts = new HashMap<>();
+
+    /** The per-node profiler for this run, or null if profiling is off */
+    NodeProfiler profiler = null;
+
+    /** The periodic sampler for this run, or null if there is none */
+    Telemetry telemetry = null;
+
+    /** Per-run data of particular model classes (which used to be
+	kept in their static fields), keyed by the class */
+    private final HashMap<Class<?>,Object> modelData = new HashMap<>();
+
+    /** @return The per-run data stored for the specified class in this context, or null */
+    public synchronized Object getModelData(Class<?> owner) {
+	return modelData.get(owner);
+    }
+
+    public synchronized void setModelData(Class<?> owner, Object data) {
+	modelData.put(owner, data);
+    }
+
+    /** Set this to true to print a lot of stuff */
+    public boolean verbose;
+    /** Set this to true to print less stuff, and turn off all interactive things */
+    public boolean quiet;
+
+    /** Creates a new context, with fresh ID generators and no open
+	charters. The chart sink rules are copied from the current
+	context.
+	@param _chartDir The directory for chart files; null means no charting
+     */
+    public RunContext(File _chartDir, boolean _quiet, boolean _verbose) {
+	chartDir = _chartDir;
+	quiet = _quiet;
+	verbose = _verbose;
+
+	// Inherit the chart sink rules from the context of the
+	// thread that creates this one (normally, the global context)
+	RunContext c = bound.get();
+	if (c==null) c = global;
+	if (c!=null) sinkRules.addAll(c.sinkRules);
+    }
+
+}
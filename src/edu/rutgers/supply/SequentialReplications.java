@@ -0,0 +1,169 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+
+/** A sequential replication controller. Instead of running a fixed
+    number of replications of a model (with different random seeds),
+    it keeps running them until the confidence interval for the mean
+    of the chosen objective (e.g. EndCustomer.Stats.avgT) becomes
+    narrow enough, or until the maximum number of replications has
+    been reached. This way, a scenario with a stable objective stops
+    after a few runs, while a noisy one gets more.
+
+    <p>The confidence interval is the usual Student-t one, mean &plusmn;
+    t(1-(1-level)/2, n-1) * s/sqrt(n). The stopping rule is checked
+    after each replication, once at least minRuns replications have
+    been done. Replications whose objective is NaN (e.g. a run in
+    which there were no orders to measure the waiting time of) count
+    toward the maximum, but do not contribute to the mean.
+ */
+public class SequentialReplications {
+
+    /** Runs one replication of the model */
+    public interface Replication {
+	/** @return The value of the objective in the run with the specified seed */
+	double run(long seed);
+    }
+
+    /** The target half-width of the confidence interval */
+    public final double targetHalfWidth;
+    /** If positive, the target is max(targetHalfWidth, relTarget*|mean|) */
+    public final double relTarget;
+    /** The confidence level, e.g. 0.95 */
+    public final double level;
+    /** The smallest and largest number of replications */
+    public final int minRuns, maxRuns;
+
+    /** The number of replications run, including those with a NaN objective */
+    private int runs=0;
+    /** The number of valid objective values, their mean, and the sum
+	of squared deviations (Welford's method) */
+    private int n=0;
+    private double mean=0, m2=0;
+    private final Vector<Double> values = new Vector<>();
+
+    /**
+       @param _targetHalfWidth The target (absolute) half-width of the confidence interval
+       @param _relTarget If positive, the target is max(targetHalfWidth, relTarget*|mean|)
+       @param _level The confidence level, e.g. 0.95
+       @param _minRuns The smallest number of replications (at least 2)
+       @param _maxRuns The largest number of replications
+     */
+    public SequentialReplications(double _targetHalfWidth, double _relTarget, double _level, int _minRuns, int _maxRuns) {
+	if (!(_targetHalfWidth>=0)) throw new IllegalArgumentException("Target half-width must be non-negative; given " + _targetHalfWidth);
+	if (!(_level>0 && _level<1)) throw new IllegalArgumentException("Confidence level must be between 0 and 1; given " + _level);
+	if (_minRuns<2) throw new IllegalArgumentException("At least 2 replications are needed for a confidence interval; given minRuns=" + _minRuns);
+	if (_maxRuns<_minRuns) throw new IllegalArgumentException("maxRuns=" + _maxRuns + " < minRuns=" + _minRuns);
+	targetHalfWidth = _targetHalfWidth;
+	relTarget = _relTarget;
+	level = _level;
+	minRuns = _minRuns;
+	maxRuns = _maxRuns;
+    }
+
+    /** Runs replications with seeds seed0, seed0+1, ..., until the
+	stopping rule is satisfied, or maxRuns have been run.
+	@return true if the target precision has been achieved
+     */
+    public boolean run(Replication r, long seed0) {
+	while(runs < maxRuns) {
+	    add(r.run(seed0 + runs));
+	    if (converged()) return true;
+	}
+	return converged();
+    }
+
+    /** Records the objective value of one more replication. This
+	can be used instead of run(), by a caller that runs the
+	replications itself and checks converged() after each one. */
+    public void add(double x) {
+	runs++;
+	if (Double.isNaN(x)) return;
+	values.add(x);
+	n++;
+	double d = x - mean;
+	mean += d/n;
+	m2 += d*(x - mean);
+    }
+
+    /** @return true if at least minRuns replications have been run,
+	and the half-width of the confidence interval is within the target */
+    public boolean converged() {
+	if (runs < minRuns || n < 2) return false;
+	return halfWidth() <= Math.max(targetHalfWidth, relTarget*Math.abs(mean));
+    }
+
+    /** @return true if another replication is needed, according to the stopping rule */
+    public boolean needMore() {
+	return runs < maxRuns && !converged();
+    }
+
+    /** @return The number of replications run so far */
+    public int getRuns() { return runs; }
+    /** @return The number of replications with a valid objective value */
+    public int getCount() { return n; }
+    public double getMean() { return mean; }
+    /** @return The sample standard deviation */
+    public double getStd() {
+	return (n<2)? Double.NaN: Math.sqrt(m2/(n-1));
+    }
+    /** @return The objective values of all runs, other than NaN */
+    public Vector<Double> getValues() { return values; }
+
+    /** @return The half-width of the confidence interval for the mean,
+	or +infinity if there are fewer than 2 values */
+    public double halfWidth() {
+	if (n<2) return Double.POSITIVE_INFINITY;
+	return studentTQuantile(1 - (1-level)/2, n-1) * getStd() / Math.sqrt(n);
+    }
+
+    public String toString() {
+	return "mean=" + mean + " +- " + halfWidth() + " (" + (level*100) + "% CI, " +
+	    n + " of " + runs + " runs" + (converged()? "": "; target precision not reached") + ")";
+    }
+
+    /** The quantile of the standard normal distribution (Acklam's
+	rational approximation, with relative error below 1.2e-9) */
+    static double normalQuantile(double p) {
+	if (!(p>0 && p<1)) throw new IllegalArgumentException("p=" + p);
+	final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02,
+			    -2.759285104469687e+02, 1.383577518672690e+02,
+			    -3.066479806614716e+01, 2.506628277459239e+00};
+	final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02,
+			    -1.556989798598866e+02, 6.680131188771972e+01,
+			    -1.328068155288572e+01};
+	final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01,
+			    -2.400758277161838e+00, -2.549732539343734e+00,
+			    4.374664141464968e+00, 2.938163982698783e+00};
+	final double[] d = {7.784695709041462e-03, 3.224671290700398e-01,
+			    2.445134137142996e+00, 3.754408661907416e+00};
+	final double pLow = 0.02425;
+	if (p < pLow) {
+	    double q = Math.sqrt(-2*Math.log(p));
+	    return (((((c[0]*q+c[1])*q+c[2])*q+c[3])*q+c[4])*q+c[5]) /
+		((((d[0]*q+d[1])*q+d[2])*q+d[3])*q+1);
+	} else if (p > 1-pLow) {
+	    return -normalQuantile(1-p);
+	} else {
+	    double q = p - 0.5, r = q*q;
+	    return (((((a[0]*r+a[1])*r+a[2])*r+a[3])*r+a[4])*r+a[5])*q /
+		(((((b[0]*r+b[1])*r+b[2])*r+b[3])*r+b[4])*r+1);
+	}
+    }
+
+    /** The quantile of Student's t distribution with nu degrees of
+	freedom. Exact for nu=1 and 2; for larger nu, the Cornish-Fisher
+	expansion around the normal quantile is used, whose error is
+	below 0.01 for nu=3 and decreases rapidly with nu. */
+    static double studentTQuantile(double p, int nu) {
+	if (nu<1) throw new IllegalArgumentException("nu=" + nu);
+	if (nu==1) return Math.tan(Math.PI*(p-0.5));
+	if (nu==2) return (2*p-1)/Math.sqrt(2*p*(1-p));
+	double z = normalQuantile(p);
+	double z2 = z*z, z3 = z2*z, z5 = z3*z2, z7 = z5*z2, z9 = z7*z2;
+	return z + (z3+z)/(4.0*nu)
+	    + (5*z5+16*z3+3*z)/(96.0*nu*nu)
+	    + (3*z7+19*z5+17*z3-15*z)/(384.0*nu*nu*nu)
+	    + (79*z9+776*z7+1482*z5-1920*z3-945*z)/(92160.0*nu*nu*nu*nu);
+    }
+}
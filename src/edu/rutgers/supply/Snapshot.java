@@ -0,0 +1,82 @@
+package  edu.rutgers.supply;
+
+import java.io.*;
+
+import sim.engine.*;
+
+/** A frozen copy of a simulation in progress, from which any number
+    of independent continuations ("branches") can be made. This is
+    used to run the warm-up part of a simulation once, and then to
+    run several disruption scenarios from the same warmed-up state,
+    instead of repeating the warm-up for each scenario. Since every
+    branch starts from the same state (including the state of the
+    random number generator), the scenarios are compared with common
+    random numbers.
+
+    <p>The snapshot is made with Java serialization, using MASON's
+    checkpointing hooks (SimState.preCheckpoint() etc), so all objects
+    reachable from the SimState must be Serializable. The lot number
+    and order ID generators of the current RunContext are saved
+    with the model, and restored with it, so that a branch generates
+    the same lot numbers as an uninterrupted run would.
+
+    <p>Chart files are not carried over (see Charter), so a restored
+    model does not write charts.
+ */
+public class Snapshot {
+
+    /** The serialized model */
+    private final byte[] data;
+    /** The simulation time at which the snapshot was taken */
+    public final double time;
+
+    private Snapshot(byte[] _data, double _time) {
+	data = _data;
+	time = _time;
+    }
+
+    /** Makes a snapshot of a model. The model itself is not affected,
+	and can continue running. */
+    public static Snapshot take(SimState state) throws IOException {
+	RunContext ctx = RunContext.get();
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	state.preCheckpoint();
+	try {
+	    ObjectOutputStream out = new ObjectOutputStream(bytes);
+	    out.writeObject(state);
+	    out.writeLong(ctx.lotNoGen);
+	    out.writeLong(ctx.lastOrderId);
+	    out.close();
+	} finally {
+	    state.postCheckpoint();
+	}
+	return new Snapshot(bytes.toByteArray(), state.schedule.getTime());
+    }
+
+    /** Creates a new, independent copy of the model as it was when
+	the snapshot was taken. The ID generators of the current
+	RunContext are reset to the values they had at that time. The
+	copy can be run by stepping its schedule; its start() method
+	should not be called.
+     */
+    public SimState restore() throws IOException {
+	RunContext ctx = RunContext.get();
+	ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+	SimState state;
+	try {
+	    state = (SimState)in.readObject();
+	} catch(ClassNotFoundException ex) {
+	    throw new IOException("Cannot restore snapshot: " + ex);
+	}
+	ctx.lotNoGen = in.readLong();
+	ctx.lastOrderId = in.readLong();
+	in.close();
+	state.awakeFromCheckpoint();
+	return state;
+    }
+
+    /** @return The size of the serialized model, in bytes */
+    public int size() {
+	return data.length;
+    }
+}
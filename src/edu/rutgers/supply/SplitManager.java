@@ -33,7 +33,7 @@ import sim.des.*;
     unit's last stage.
     
  */
-public class SplitManager {
+public class SplitManager implements Serializable {
 
     /** The last stage of the producton unit that feeds into (or
         through) the SplitManager. The SplitManager will ensure that
@@ -35,7 +35,7 @@ public class Splitter extends If {
 
     /** An auxiliary class used for accounting of the product going
 	to a particular Receiever */
-    public static class RData {
+    public static class RData implements java.io.Serializable {
 	/** specifies the fraction of the input that will
 	    be sent to this receiver */
 	public final double fraction;
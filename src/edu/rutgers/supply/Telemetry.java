@@ -0,0 +1,211 @@
+package  edu.rutgers.supply;
+
+import java.util.*;
+import java.io.*;
+import java.util.regex.*;
+
+import sim.engine.*;
+import sim.des.*;
+
+/** A periodic sampler of the "population" of a simulation run: how
+    many lots sit in each buffer, how much stuff is there, how many
+    nodes are being delayed in each Delay, how many orders are
+    outstanding. This is meant to catch memory blowups (lots piling up
+    somewhere) while they are developing, rather than after an
+    OutOfMemoryError.
+
+    <p>The supply chain elements register their gauges with addGauge()
+    in their constructors, if a Telemetry object is attached to the
+    current RunContext (see setCurrent()). The Telemetry object is
+    scheduled to step at regular intervals; at each step it reads all
+    gauges, and appends a row to an in-memory series (a
+    MemoryChartSink named "telemetry", which can also be retrieved with
+    Charter.getMemoryChart()). At the end of the run, dump() writes
+    the series into telemetry.csv in the chart directory.
+
+    <p>An alarm, added with addAlarm(), watches all gauges whose names
+    match a pattern. When any of them exceeds the threshold, the alarm
+    is reported, and the simulation is killed (which calls its
+    finish(), where the series can be dumped).
+ */
+public class Telemetry implements Steppable {
+
+    /** The number of run contexts that have a Telemetry attached;
+	while it is 0, getCurrent() does not even need to look up the
+	current context */
+    private static final java.util.concurrent.atomic.AtomicInteger attached = new java.util.concurrent.atomic.AtomicInteger();
+
+    /** A value to be sampled */
+    public interface Gauge extends Serializable {
+	double value();
+    }
+
+    /** A gauge attached to a node. The name of the column is only
+	determined when the first sample is taken, because the nodes
+	are often named after they are constructed. */
+    private static class Column implements Serializable {
+	final Named node;
+	final String what;
+	final Gauge gauge;
+	Column(Named _node, String _what, Gauge _gauge) {
+	    node = _node;
+	    what = _what;
+	    gauge = _gauge;
+	}
+	String name() { return node.getName() + "." + what; }
+    }
+
+    private final Vector<Column> columns = new Vector<>();
+
+    /** Fires when any gauge whose name matches the pattern exceeds
+	the threshold */
+    private static class Alarm implements Serializable {
+	final Pattern pattern;
+	final double threshold;
+	/** Which columns this alarm watches; set on the first sample */
+	int[] watched;
+	Alarm(Pattern _pattern, double _threshold) {
+	    pattern = _pattern;
+	    threshold = _threshold;
+	}
+    }
+
+    private final Vector<Alarm> alarms = new Vector<>();
+
+    /** The sampled data. Created when the first sample is taken. */
+    private MemoryChartSink series = null;
+    private double[] row;
+
+    /** The message describing the alarm that has stopped the run, or
+	null if none */
+    private String alarmMsg = null;
+
+    /** The interval (in simulation days) between samples */
+    public final double interval;
+
+    public Telemetry(double _interval) {
+	if (!(_interval>0)) throw new IllegalArgumentException("Telemetry interval must be positive; given " + _interval);
+	interval = _interval;
+    }
+
+    /** Attaches the specified Telemetry object (or null, for none)
+	to the current RunContext. A Telemetry should be detached, with
+	setCurrent(null), at the end of the run. */
+    public static void setCurrent(Telemetry t) {
+	RunContext ctx = RunContext.get();
+	if (ctx.telemetry==null && t!=null) attached.incrementAndGet();
+	else if (ctx.telemetry!=null && t==null) attached.decrementAndGet();
+	ctx.telemetry = t;
+    }
+
+    /** @return the Telemetry attached to the current RunContext, or null */
+    public static Telemetry getCurrent() {
+	return (attached.get()>0)? RunContext.get().telemetry : null;
+    }
+
+    /** Registers a gauge. This should be done before the first sample
+	is taken, i.e. while the supply chain is being built.
+	@param node The node whose gauge this is
+	@param what The name of the gauge, which is appended to the name of
+	the node to form the name of the column, e.g. "lots"
+    */
+    public void addGauge(Named node, String what, Gauge g) {
+	if (series!=null) throw new IllegalArgumentException("Cannot add gauge " + what + " for " + node.getName() + " after the sampling has started");
+	columns.add(new Column(node, what, g));
+    }
+
+    /** Adds an alarm.
+	@param spec An expression of the form "regex&gt;threshold", e.g.
+	".*\.lots&gt;10000", which means that the run should be aborted
+	if any gauge whose name matches the regular expression exceeds
+	the threshold.
+     */
+    public void addAlarm(String spec) {
+	int k = spec.lastIndexOf('>');
+	if (k<0) throw new IllegalArgumentException("Telemetry alarm should have the form regex>threshold, e.g. .*\\.lots>10000; found: " + spec);
+	double threshold;
+	try {
+	    threshold = Double.parseDouble(spec.substring(k+1).trim());
+	} catch(NumberFormatException ex) {
+	    throw new IllegalArgumentException("Invalid threshold in telemetry alarm: " + spec);
+	}
+	alarms.add(new Alarm(Pattern.compile(spec.substring(0,k)), threshold));
+    }
+
+    /** Sets up the series, and decides which columns each alarm watches */
+    private void init() {
+	String[] names = new String[columns.size()];
+	for(int k=0; k<names.length; k++) names[k] = columns.get(k).name();
+	series = new MemoryChartSink("telemetry");
+	series.header(true, names);
+	RunContext.get().memoryCharts.put(series.name, series);
+	row = new double[names.length];
+
+	for(Alarm a: alarms) {
+	    Vector<Integer> v = new Vector<>();
+	    for(int k=0; k<names.length; k++) {
+		if (a.pattern.matcher(names[k]).matches()) v.add(k);
+	    }
+	    a.watched = new int[v.size()];
+	    for(int j=0; j<a.watched.length; j++) a.watched[j] = v.get(j);
+	}
+    }
+
+    /** Takes a sample, and checks the alarms */
+    public void step(SimState state) {
+	if (series==null) init();
+	for(int k=0; k<row.length; k++) row[k] = columns.get(k).gauge.value();
+	double now = state.schedule.getTime();
+	series.row(now, row);
+
+	if (alarmMsg!=null) return;
+	for(Alarm a: alarms) {
+	    for(int k: a.watched) {
+		if (row[k] > a.threshold) {
+		    alarmMsg = "Telemetry alarm at t=" + now + ": " +
+			series.getNames()[k] + "=" + row[k] +
+			" exceeds " + a.threshold + "; aborting the run";
+		    System.err.println(alarmMsg);
+		    state.kill();
+		    return;
+		}
+	    }
+	}
+    }
+
+    /** @return A message describing the alarm that has stopped the
+	run, or null if there has been none */
+    public String getAlarm() {
+	return alarmMsg;
+    }
+
+    /** @return The series sampled so far, or null if no sample has
+	been taken yet */
+    public MemoryChartSink getSeries() {
+	return series;
+    }
+
+    /** Writes the series sampled so far into telemetry.csv in the
+	chart directory, in the same format as other chart files. Does
+	nothing if charting is turned off. */
+    public void dump() {
+	File dir = Charter.getDir();
+	if (dir==null || series==null) return;
+	try {
+	    if (!dir.exists() && !dir.mkdirs()) throw new IOException("Failed to create dir=" + dir);
+	    CsvChartSink w = new CsvChartSink(new File(dir, series.name + ".csv"), true);
+	    w.header(true, series.getNames());
+	    double[] times = series.getTimes();
+	    double[][] cols = new double[row.length][];
+	    for(int k=0; k<cols.length; k++) cols[k] = series.getColumn(k);
+	    double[] r = new double[cols.length];
+	    for(int i=0; i<times.length; i++) {
+		for(int k=0; k<cols.length; k++) r[k] = cols[k][i];
+		w.row(times[i], r);
+	    }
+	    w.close();
+	} catch(IOException ex) {
+	    System.err.println("Error writing telemetry: " + ex);
+	}
+    }
+}
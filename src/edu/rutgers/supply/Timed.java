@@ -19,7 +19,7 @@ package  edu.rutgers.supply;
 
     <p>A new timer (created by the Timer() constructor) is inactive. It can be activated, for the duration of a specified time interval, with a call to enableUntil(), or setValueUntil(). At the end of the specified intervale, it will deactivate itself. However, it is also possible to explicitly deactivate the timer with a disable() call.
 */
-public class Timed {
+public class Timed implements java.io.Serializable {
     private Double onUntil = null;
     /** The optional (only used for some disruption types) magnitude (strength)
 	of the disruption) */
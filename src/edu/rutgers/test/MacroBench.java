@@ -0,0 +1,331 @@
+package  edu.rutgers.test;
+
+import edu.rutgers.util.*;
+import edu.rutgers.supply.*;
+
+import java.io.*;
+import java.util.*;
+import java.text.*;
+import java.lang.management.*;
+
+import sim.engine.*;
+
+/** An end-to-end ("macro") benchmark runner. It runs each of the
+    models (SC-3 with the full and the small config, SC-2, and PHARMA3)
+    for a fixed horizon with fixed seeds; SC-2 is also run with each
+    of the disruption scenarios from config/dis-sc2. For each run,
+    it records the wall-clock time, the simulated days per second,
+    the amount of memory allocated (and the allocation rate), and
+    the peak heap usage.
+
+    <p>The results are written to a CSV file. If a baseline file
+    (a results file from an earlier run) is given, each run's numbers
+    are compared with those of the same run in the baseline, and any
+    metric that is worse by more than the tolerance is reported as a
+    regression; in this case, the program exits with code 1.
+
+    <p>Sample usage (from the main directory):
+<pre>
+java edu.rutgers.test.MacroBench -until 2000 -out bench.csv -baseline bench-baseline.csv -tolerance 0.15
+</pre>
+
+    Options:
+<pre>
+-root dir -- the main directory, containing config/ (default ".")
+-until t -- the number of days to simulate (default 2000)
+-seed s -- the first seed (default 0)
+-repeat n -- run each scenario n times, with seeds s, s+1, ... (default 1)
+-warmup n -- before the measured runs, run each scenario n times, to let
+the JIT compiler warm up (default 1). The warm-up runs use the seeds
+s+repeat, s+repeat+1, ..., which are not used by the measured runs
+-only regex -- only run the scenarios whose labels match the regex
+-out file -- where to write the results (default macro-bench.csv)
+-baseline file -- the results file to compare against
+-tolerance x -- the allowed relative worsening, e.g. 0.1 for 10% (default 0.1)
+</pre>
+ */
+public class MacroBench {
+
+    /** One model run to measure: a model with a config file and,
+	optionally, a disruption scenario */
+    static class Scenario {
+	final String label, model;
+	final File config, disruptions;
+	Scenario(String _label, String _model, File _config, File _disruptions) {
+	    label = _label;
+	    model = _model;
+	    config = _config;
+	    disruptions = _disruptions;
+	}
+
+	/** Creates the model's Demo object, via the model's own MakesDemo */
+	SimState mkDemo(long seed) throws IOException, IllegalInputException {
+	    Vector<String> v = new Vector<>();
+	    v.add("-config");
+	    v.add(config.getPath());
+	    v.add("-charts");
+	    v.add("null");
+	    v.add("-quiet");
+	    if (disruptions!=null) {
+		v.add("-disrupt");
+		v.add(disruptions.getPath());
+	    }
+	    String[] argv = v.toArray(new String[0]);
+	    // This JVM-wide flag controls how the disruption files are
+	    // parsed. The sc3.Demo constructor turns it off, so it has to
+	    // be turned back on for the other models, which are run after
+	    // SC-3 in the same JVM, or else their disruption scenarios
+	    // would be read with the SC-3 semantics.
+	    Disruptions.setSc2BackwardCompatible(!model.equals("sc3"));
+	    if (model.equals("sc3")) {
+		edu.rutgers.sc3.Demo.MakesDemo maker = new edu.rutgers.sc3.Demo.MakesDemo(argv);
+		return maker.newInstance(seed, maker.argvStripped);
+	    } else if (model.equals("sc2")) {
+		edu.rutgers.sc2.Demo.MakesDemo maker = new edu.rutgers.sc2.Demo.MakesDemo(argv);
+		return maker.newInstance(seed, maker.argvStripped);
+	    } else if (model.equals("pharma3")) {
+		edu.rutgers.pharma3.Demo.MakesDemo maker = new edu.rutgers.pharma3.Demo.MakesDemo(argv);
+		return maker.newInstance(seed, maker.argvStripped);
+	    } else throw new IllegalArgumentException("Unknown model: " + model);
+	}
+    }
+
+    /** The measurements for one run */
+    static class Result {
+	String label;
+	long seed;
+	double until;
+	double wallSec, daysPerSec, allocMB, allocMBPerSec, peakHeapMB;
+
+	static final String HEADER = "#label,seed,until,wallSec,daysPerSec,allocMB,allocMBPerSec,peakHeapMB";
+
+	String toCsv() {
+	    return label + "," + seed + "," + until + "," + wallSec + "," + daysPerSec + "," +
+		allocMB + "," + allocMBPerSec + "," + peakHeapMB;
+	}
+
+	static Result parse(String line) throws IllegalInputException {
+	    String[] q = line.split(",");
+	    if (q.length != 8) throw new IllegalInputException("Cannot parse benchmark result line: " + line);
+	    Result r = new Result();
+	    r.label = q[0];
+	    r.seed = Long.parseLong(q[1]);
+	    r.until = Double.parseDouble(q[2]);
+	    r.wallSec = Double.parseDouble(q[3]);
+	    r.daysPerSec = Double.parseDouble(q[4]);
+	    r.allocMB = Double.parseDouble(q[5]);
+	    r.allocMBPerSec = Double.parseDouble(q[6]);
+	    r.peakHeapMB = Double.parseDouble(q[7]);
+	    return r;
+	}
+
+	/** Identifies the same run in different result files */
+	String key() {
+	    return label + "@" + seed + "/" + until;
+	}
+    }
+
+    static final double MB = 1024*1024;
+
+    /** Runs one simulation in the current thread, and measures it */
+    static Result runOne(final Scenario sc, final long seed, final double until) throws IOException, IllegalInputException {
+	return new ContextRun<SimState,Result>(new RunContext(null, true, false), until) {
+	    List<MemoryPoolMXBean> heapPools = new Vector<>();
+	    com.sun.management.ThreadMXBean tb = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	    long tid = Thread.currentThread().getId();
+	    long alloc0, t0;
+
+	    protected SimState create() throws IOException, IllegalInputException {
+		return sc.mkDemo(seed);
+	    }
+
+	    protected void beforeStart(SimState demo) {
+		System.gc();
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+		    if (pool.getType()==MemoryType.HEAP) {
+			pool.resetPeakUsage();
+			heapPools.add(pool);
+		    }
+		}
+		alloc0 = tb.getThreadAllocatedBytes(tid);
+		t0 = System.nanoTime();
+	    }
+
+	    protected Result result(SimState demo) {
+		long t1 = System.nanoTime();
+		long alloc1 = tb.getThreadAllocatedBytes(tid);
+		long peak = 0;
+		for(MemoryPoolMXBean pool: heapPools) peak += pool.getPeakUsage().getUsed();
+
+		Result r = new Result();
+		r.label = sc.label;
+		r.seed = seed;
+		r.until = until;
+		r.wallSec = (t1-t0)*1e-9;
+		r.daysPerSec = until / r.wallSec;
+		r.allocMB = (alloc1-alloc0)/MB;
+		r.allocMBPerSec = r.allocMB / r.wallSec;
+		r.peakHeapMB = peak/MB;
+		return r;
+	    }
+	}.run();
+    }
+
+    /** The standard set of scenarios */
+    static Vector<Scenario> mkScenarios(File root) {
+	File configDir = new File(root, "config");
+	Vector<Scenario> v = new Vector<>();
+	v.add(new Scenario("sc3", "sc3", new File(configDir, "sc3.csv"), null));
+	v.add(new Scenario("sc3-small", "sc3", new File(configDir, "sc3-small.csv"), null));
+	File sc2Config = new File(configDir, "sc2.csv");
+	v.add(new Scenario("sc2", "sc2", sc2Config, null));
+	File[] dis = new File(configDir, "dis-sc2").listFiles();
+	if (dis!=null) {
+	    Arrays.sort(dis);
+	    for(File f: dis) {
+		if (!f.getName().endsWith(".csv")) continue;
+		String name = f.getName().replaceAll("\\.csv$", "");
+		v.add(new Scenario("sc2+" + name, "sc2", sc2Config, f));
+	    }
+	}
+	v.add(new Scenario("pharma3", "pharma3", new File(configDir, "pharma3.csv"), null));
+	return v;
+    }
+
+    static HashMap<String,Result> readResults(File f) throws IOException, IllegalInputException {
+	HashMap<String,Result> h = new HashMap<>();
+	BufferedReader r = new BufferedReader(new FileReader(f));
+	String line;
+	while((line = r.readLine())!=null) {
+	    line = line.trim();
+	    if (line.length()==0 || line.startsWith("#")) continue;
+	    Result x = Result.parse(line);
+	    h.put(x.key(), x);
+	}
+	r.close();
+	return h;
+    }
+
+    static final DecimalFormat df = new DecimalFormat("0.###");
+
+    /** Compares one metric with the baseline.
+	@param higherIsBetter True for throughput-type metrics
+	@return A description of the regression, or null if there is none
+     */
+    static String compare(String metric, double x, double base, boolean higherIsBetter, double tolerance) {
+	boolean worse = higherIsBetter?
+	    x < base/(1+tolerance):
+	    x > base*(1+tolerance);
+	if (!worse) return null;
+	return metric + "=" + df.format(x) + " vs. baseline " + df.format(base);
+    }
+
+    /** Compares the results with the baseline.
+	@return the number of runs with regressions
+     */
+    static int compareAll(Vector<Result> results, HashMap<String,Result> baseline, double tolerance) {
+	int bad = 0;
+	for(Result r: results) {
+	    Result b = baseline.get(r.key());
+	    if (b==null) {
+		System.out.println(r.label + " (seed " + r.seed + "): not in the baseline");
+		continue;
+	    }
+	    Vector<String> v = new Vector<>();
+	    String s;
+	    if ((s=compare("wallSec", r.wallSec, b.wallSec, false, tolerance))!=null) v.add(s);
+	    if ((s=compare("daysPerSec", r.daysPerSec, b.daysPerSec, true, tolerance))!=null) v.add(s);
+	    if ((s=compare("allocMB", r.allocMB, b.allocMB, false, tolerance))!=null) v.add(s);
+	    if ((s=compare("peakHeapMB", r.peakHeapMB, b.peakHeapMB, false, tolerance))!=null) v.add(s);
+	    if (v.size()>0) {
+		bad++;
+		System.out.println("REGRESSION: " + r.label + " (seed " + r.seed + "): " + String.join("; ", v));
+	    } else {
+		System.out.println("OK: " + r.label + " (seed " + r.seed + ")");
+	    }
+	}
+	return bad;
+    }
+
+    public static void main(String[] argv) throws IOException, IllegalInputException {
+	File root = new File(".");
+	double until = 2000;
+	long seed0 = 0;
+	int repeat = 1, warmup = 1;
+	String only = null;
+	File out = new File("macro-bench.csv"), baselineFile = null;
+	double tolerance = 0.1;
+
+	for(int j=0; j<argv.length; j++) {
+	    String a = argv[j];
+	    if (a.equals("-root") && j+1<argv.length) {
+		root = new File(argv[++j]);
+	    } else if (a.equals("-until") && j+1<argv.length) {
+		until = Double.parseDouble(argv[++j]);
+	    } else if (a.equals("-seed") && j+1<argv.length) {
+		seed0 = Long.parseLong(argv[++j]);
+	    } else if (a.equals("-repeat") && j+1<argv.length) {
+		repeat = Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-warmup") && j+1<argv.length) {
+		warmup = Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-only") && j+1<argv.length) {
+		only = argv[++j];
+	    } else if (a.equals("-out") && j+1<argv.length) {
+		out = new File(argv[++j]);
+	    } else if (a.equals("-baseline") && j+1<argv.length) {
+		baselineFile = new File(argv[++j]);
+	    } else if (a.equals("-tolerance") && j+1<argv.length) {
+		tolerance = Double.parseDouble(argv[++j]);
+	    } else {
+		throw new IllegalInputException("Unknown option: " + a);
+	    }
+	}
+	if (repeat < 1) throw new IllegalInputException("repeat<1");
+	if (tolerance < 0) throw new IllegalInputException("tolerance<0");
+
+	// Read it first, so that a bad file is reported before the long runs
+	HashMap<String,Result> baseline = (baselineFile==null)? null: readResults(baselineFile);
+
+	Vector<Scenario> scenarios = new Vector<>();
+	for(Scenario sc: mkScenarios(root)) {
+	    if (only==null || sc.label.matches(only)) scenarios.add(sc);
+	}
+
+	// The warm-up runs use seeds that no measured run uses, so that
+	// the measured runs don't benefit from anything (e.g. a cached
+	// assessment) left over from a run with the same seed
+	for(int k=0; k<warmup; k++) {
+	    for(Scenario sc: scenarios) {
+		System.out.println("Warm-up run: " + sc.label);
+		runOne(sc, seed0+repeat+k, until);
+	    }
+	}
+
+	Vector<Result> results = new Vector<>();
+	PrintWriter w = new PrintWriter(new FileWriter(out));
+	w.println(Result.HEADER);
+	for(Scenario sc: scenarios) {
+	    for(int j=0; j<repeat; j++) {
+		Result r = runOne(sc, seed0+j, until);
+		results.add(r);
+		w.println(r.toCsv());
+		w.flush();
+		System.out.println(r.label + " (seed " + r.seed + "): " +
+				   df.format(r.wallSec) + " sec, " +
+				   df.format(r.daysPerSec) + " days/sec, allocated " +
+				   df.format(r.allocMB) + " MB (" +
+				   df.format(r.allocMBPerSec) + " MB/sec), peak heap " +
+				   df.format(r.peakHeapMB) + " MB");
+	    }
+	}
+	w.close();
+	System.out.println("Results saved to " + out);
+
+	int bad = 0;
+	if (baseline!=null) {
+	    bad = compareAll(results, baseline, tolerance);
+	    System.out.println(bad + " of " + results.size() + " runs regressed by more than " + df.format(tolerance*100) + "% against " + baselineFile);
+	}
+	System.exit(bad>0? 1: 0);
+    }
+}
@@ -38,6 +38,25 @@ import edu.rutgers.supply.Disruptions.Type;
     each run to print only the description of the scenario and the summary
     numbers, instead of detailed info pages.
 
+    <p>With the -warmup T option (T &le; 100, since all disruptions
+    start on day 100), the baseline is only simulated through day T
+    once for each seed, and every scenario continues from a snapshot
+    of that state, with the same seeds. This saves the repeated
+    warm-up, and makes the scenarios directly comparable. Charts are
+    not written by the runs branched from the snapshots.
+
+    <p>With the -ci H option (and/or -ciRel R), the number of runs
+    for each scenario is not fixed: runs with successive seeds are
+    made until the 95% confidence interval for the avg waiting time
+    has the half-width of at most H days (or R times the mean), or
+    until -maxRepeat runs (default 30) have been done. The -repeat
+    value is then the minimum number of runs.
+
+    <p>With the -crn option, each supply chain element uses its own
+    random number stream (see sc3.Demo.setIndependentStreams()), so
+    that the runs of different scenarios with the same seed differ
+    only due to the disruptions themselves.
+
     <p>The disruption types are supported as follows:
 
 <pre>
@@ -97,6 +116,43 @@ public class TestSc3 {
 	state.finish();
     }
 
+    /** Continues a simulation restored from a snapshot (which must
+	not be start()ed again) until the specified time. */
+    public static void continueLoop(SimState state, double until) {
+	Schedule schedule = state.schedule;
+	while(schedule.getTime() <= until)	    {
+	    state.preSchedule();
+	    if (!schedule.step(state)) 		    {
+		throw new AssertionError("Step failed");
+	    }
+	    state.postSchedule();
+	}
+	state.finish();
+    }
+
+    /** Runs the baseline model (with no disruptions) through the
+	warm-up period, i.e. for all days before the day warmup, and
+	makes a snapshot of it. Every scenario will be branched from
+	such snapshots, rather than simulated from day 0.
+     */
+    private static Snapshot warmUp(String[] argv, Demo.MakesDemo maker, long seed, double warmup) throws IOException {
+	Demo demo = (Demo)maker.newInstance(seed, argv);
+	demo.setQuiet( true);
+	demo.setDisruptions(null);
+	demo.start();
+	Schedule schedule = demo.schedule;
+	while(schedule.getTime() + 1 < warmup) {
+	    demo.preSchedule();
+	    if (!schedule.step(demo)) {
+		throw new AssertionError("Step failed");
+	    }
+	    demo.postSchedule();
+	}
+	Snapshot snap = demo.snapshot();
+	demo.finish();
+	return snap;
+    }
+
     
     /** Creates disruption scenario No. n on a specified node of the supply
 	chain and with a specified disruption type. This is for
@@ -163,6 +219,14 @@ public class TestSc3 {
 		seed = Long.parseLong(argv[++j]);
 	    } else if (a.equals("-until") && j+1<argv.length) {
 		until =  Integer.parseInt(argv[++j]);
+	    } else if (a.equals("-warmup") && j+1<argv.length) {
+		warmup =  Double.parseDouble(argv[++j]);
+	    } else if (a.equals("-ci") && j+1<argv.length) {
+		ciTarget =  Double.parseDouble(argv[++j]);
+	    } else if (a.equals("-ciRel") && j+1<argv.length) {
+		ciRelTarget =  Double.parseDouble(argv[++j]);
+	    } else if (a.equals("-maxRepeat") && j+1<argv.length) {
+		maxRepeat =  Integer.parseInt(argv[++j]);
 	    } else {
 		//keep = true;
 	    }
@@ -178,6 +242,14 @@ public class TestSc3 {
 	
 	if (maker.repeat < 1) throw new  IllegalInputException("repeat<1");
 
+	if (warmup > 0) {
+	    if (warmup > 100) throw new  IllegalInputException("The warm-up period must end by day 100, when the disruptions start; given warmup=" + warmup);
+	    // One snapshot for each seed; all scenarios are branched
+	    // from the same snapshots (common random numbers)
+	    snapshots = new Vector<>();
+	    for(int j=0; j<maker.repeat; j++) getSnapshot(argv, maker, j);
+	    System.out.println("Made " + snapshots.size() + " warm-up snapshot(s) at t=" + snapshots.get(0).time + ", " + snapshots.get(0).size() + " bytes each");
+	}
 
 	int cnt=0;
 
@@ -188,7 +260,8 @@ public class TestSc3 {
 	Disruptions disr0 = createDisruptionScenarioA(null, null, 0);
 	if (!maker.repeatSet) {
 	    // No -repeat option: Explicitly do and display multiple runs, without averaging
-	    int K = 3;
+	    // (With snapshots, all runs would be identical)
+	    int K = (snapshots==null)? 3: 1;
 	    for(int k=1; k<= K; k++) {
 		String label = "("+(cnt++)+") Baseline:" + k;
 		test(argv, maker, disr0, label);
@@ -334,17 +407,100 @@ public class TestSc3 {
     static final DecimalFormat df = new DecimalFormat("0.###");
 
     static private double until = 2000;
+
+    /** If positive, the baseline is simulated until this day once
+	(for each seed), and all scenarios are branched from the
+	snapshots made at that point */
+    static private double warmup = 0;
+    static private Vector<Snapshot> snapshots = null;
+
+    /** Returns the snapshot for the j-th seed, making it (and any
+	missing ones before it) if needed */
+    private static Snapshot getSnapshot(String[] argv, Demo.MakesDemo maker, int j) throws IOException {
+	while(snapshots.size() <= j) {
+	    snapshots.add(warmUp(argv, maker, seed+snapshots.size(), warmup));
+	}
+	return snapshots.get(j);
+    }
+
+    /** If positive, the number of runs in each group is not fixed;
+	instead, runs are added until the half-width of the confidence
+	interval for the avg waiting time is within this many days (or
+	within the -ciRel fraction of the mean), or until maxRepeat
+	runs have been done. In this mode, -repeat gives the minimum
+	number of runs. */
+    static private double ciTarget = 0;
+    static private double ciRelTarget = 0;
+    static private int maxRepeat = 30;
+
+    /** Carries out one run.
+	@param j The number of the run in the group (which selects
+	the snapshot, if snapshots are used)
+	@return Waiting stats, as per Demo.getWaitingStats()
+     */
+    private static EndCustomer.Stats[] runOne(String[] argv,
+					      Demo.MakesDemo maker,
+					      Disruptions disr, long seed, int j) throws IOException {
+	Demo demo;
+	if (snapshots!=null) {
+	    demo = (Demo)getSnapshot(argv, maker, j).restore();
+	    demo.branchDisruptions(disr);
+	    continueLoop( demo, until);
+	} else {
+	    demo = (Demo)maker.newInstance( seed, argv);   
+	    demo.setQuiet( true);
+	    demo.setDisruptions(disr);
+	    
+	    // Run simulation
+	    
+	    myLoop( demo, until);
+	}
+	return demo.getWaitingStats();
+    }
+
+    /** Like test(), but with the number of runs determined by
+	a SequentialReplications controller */
+    private static void testAdaptive(final String[] argv,
+				     final Demo.MakesDemo maker,
+				     final Disruptions disr, String label) {
+	final long seed0 = seed;
+	System.out.println("Run group No. " + label + ", seeds from " + seed0 + "; Disruptions=" + disr);
+	System.out.println(disr.toCsv());
+
+	SequentialReplications ctl = new SequentialReplications(ciTarget, ciRelTarget, 0.95, Math.max(2, maker.repeat), Math.max(2, Math.max(maker.repeat, maxRepeat)));
+	ctl.run(new SequentialReplications.Replication() {
+		public double run(long s) {
+		    try {
+			return runOne(argv, maker, disr, s, (int)(s - seed0))[2].avgT;
+		    } catch(IOException ex) {
+			throw new IllegalArgumentException("Cannot restore the snapshot: " + ex);
+		    }
+		}
+	    }, seed0);
+	if (snapshots==null) seed += ctl.getRuns();
+
+	System.out.println("For all "+ctl.getRuns()+" runs, avg waiting time=" + df.format(ctl.getMean()) + "+-" + df.format(ctl.halfWidth()) + " (95% CI)" +
+			   (ctl.converged()? "": "; target precision not reached"));
+    }
     
     /** Wrapper for a single simulation run */
     private static void test(String[] argv,
 			     Demo.MakesDemo maker,
-			     Disruptions disr, String label) {
+			     Disruptions disr, String label) throws IOException {
+
+	if (ciTarget > 0 || ciRelTarget > 0) {
+	    testAdaptive(argv, maker, disr, label);
+	    return;
+	}
 
 	int repeatCnt =  maker.repeat;
+	// With snapshots, every scenario reuses the same seeds
+	long seed0 = seed;
+	if (snapshots==null) seed += repeatCnt;
 
 	String msg = "Run "  + (repeatCnt>1? "group ":"") +
-	    " No. " + label + ", seed=" + seed;
-	if (repeatCnt > 1) msg += ".." + (seed+repeatCnt-1);
+	    " No. " + label + ", seed=" + seed0;
+	if (repeatCnt > 1) msg += ".." + (seed0+repeatCnt-1);
 	msg += "; Disruptions=" + disr;
 
 	System.out.println(msg);
@@ -354,15 +510,7 @@ public class TestSc3 {
 	
 
 	for(int j=0; j<repeatCnt; j++) {
-	    Demo demo = (Demo)maker.newInstance( seed++, argv);   
-	    demo.setQuiet( true);
-	    demo.setDisruptions(disr);
-	    
-	    // Run simulation
-	    
-	    myLoop( demo, until);
-	    
-	    EndCustomer.Stats[] stats = demo.getWaitingStats();
+	    EndCustomer.Stats[] stats = runOne(argv, maker, disr, seed0+j, j);
 	    EndCustomer.Stats awf=stats[0], awu=stats[1], aw = stats[2];
 	    
 	    Vector<String> v = new Vector<>();
@@ -2,6 +2,7 @@ package edu.rutgers.util;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.*;
 
 import ec.util.MersenneTwisterFast;
 import sim.util.distribution.*;
@@ -41,6 +42,234 @@ public class Config extends HashMap<String,ParaSet> {
 	return h;
     }
 
+    /** Parsed (and frozen) config files, keyed by canonical path */
+    private static final HashMap<String,Config> cache = new HashMap<>();
+    /** The modification times of the cached files, so that a file
+	edited since it was cached will be read again */
+    private static final HashMap<String,Long> cacheTimes = new HashMap<>();
+
+    /** Same as readConfig(), but parses each file only once per JVM
+	(unless it changes on disk). This is meant for optimizers that
+	create a model instance for each fitness evaluation. The parsed
+	config is frozen, and each call returns a separate overlay on
+	top of it (see overlay()), so the caller may modify its copy
+	(e.g. with addNewParameter()) without affecting other callers,
+	including those running concurrently in other threads.
+     */
+    public static Config readConfigCached(File f) throws IOException, IllegalInputException  {
+	String key = f.getCanonicalPath();
+	Config h;
+	synchronized(cache) {
+	    h = cache.get(key);
+	    Long t = cacheTimes.get(key);
+	    if (h==null || t==null || t.longValue()!=f.lastModified()) {
+		h = readConfig(f);
+		h.freeze();
+		cache.put(key, h);
+		cacheTimes.put(key, f.lastModified());
+	    }
+	}
+	return h.overlay();
+    }
+
+    /** If this Config is an overlay, this is the Config it is layered over */
+    private Config base = null;
+    
+    /** Set by freeze() */
+    private boolean frozen = false;
+
+    /** Makes this Config immutable. All numeric values in it are
+	parsed once, here, so that the getters of its ParaSets will
+	not need to parse them again. A frozen Config can be safely
+	shared by several threads; to modify parameters, create an
+	overlay().
+    */
+    public void freeze() {
+	if (frozen) return;
+	for(ParaSet para: values()) para.freeze();
+	frozen = true;
+    }
+
+    public boolean isFrozen() { return frozen; }
+
+    /** Creates a new Config that, initially, has the same content as
+	this one, without copying it. Parameters added or changed in the
+	overlay with addNewParameter() are stored in the overlay
+	itself (in a ParaSet that is, in its turn, layered over the
+	base ParaSet with the same name), while everything else is
+	looked up in this Config. This Config should not be modified
+	afterwards; normally, it would be frozen.
+	
+	<p>Changing the "default" para set in the overlay only affects
+	para sets created in the overlay itself, since the base para
+	sets fall back to the base "default" para set.
+     */
+    public Config overlay() {
+	Config h = new Config();
+	h.readFrom = readFrom;
+	h.base = this;
+	return h;
+    }
+
+    /** Looks up a para set, first in this Config, and then (if this is an overlay) in its base */
+    public ParaSet get(Object name) {
+	ParaSet para = super.get(name);
+	if (para==null && base!=null) para = base.get(name);
+	return para;
+    }
+
+    public boolean containsKey(Object name) {
+	return super.containsKey(name) || (base!=null && base.containsKey(name));
+    }
+
+    /** All para sets in effect: those of this Config, together with
+	those of the base (if this is an overlay) that have not been
+	replaced here */
+    private HashMap<String,ParaSet> merged() {
+	HashMap<String,ParaSet> h = new HashMap<>();
+	if (base!=null) h.putAll(base.merged());
+	for(Map.Entry<String,ParaSet> e: super.entrySet()) h.put(e.getKey(), e.getValue());
+	return h;
+    }
+
+    /** True if the collection views have to be read-only snapshots
+	of all para sets in effect, rather than HashMap's own views */
+    private boolean layered() {
+	return base!=null || frozen;
+    }
+
+    /** The names of all para sets, including those (if this is an
+	overlay) that are only stored in the base. For an overlay or a
+	frozen Config, this (like values() and entrySet()) is a
+	read-only snapshot. */
+    public Set<String> keySet() {
+	return layered()? Collections.unmodifiableMap(merged()).keySet(): super.keySet();
+    }
+
+    public Collection<ParaSet> values() {
+	return layered()? Collections.unmodifiableMap(merged()).values(): super.values();
+    }
+
+    public Set<Map.Entry<String,ParaSet>> entrySet() {
+	return layered()? Collections.unmodifiableMap(merged()).entrySet(): super.entrySet();
+    }
+
+    public int size() {
+	return (base==null)? super.size(): merged().size();
+    }
+
+    public boolean isEmpty() {
+	return size()==0;
+    }
+
+    /** Throws an exception if this Config is frozen, or if the
+	change would have to be made in the base of an overlay */
+    private void checkMutable(Object name) {
+	if (frozen) throw new IllegalStateException("Cannot modify a frozen Config; use an overlay instead");
+	if (base!=null && name!=null && base.containsKey(name)) throw new UnsupportedOperationException("Cannot remove para set " + name + " from an overlay, since it is stored in the base");
+    }
+
+    public ParaSet put(String name, ParaSet para) {
+	checkMutable(null);
+	return super.put(name, para);
+    }
+
+    public void putAll(Map<? extends String, ? extends ParaSet> m) {
+	checkMutable(null);
+	super.putAll(m);
+    }
+
+    public ParaSet remove(Object name) {
+	checkMutable(name);
+	return super.remove(name);
+    }
+
+    public void clear() {
+	checkMutable(null);
+	if (base!=null && !base.isEmpty()) throw new UnsupportedOperationException("Cannot clear an overlay, since its base is not empty");
+	super.clear();
+    }
+
+    /* HashMap implements the following methods on its own table,
+       bypassing get(), put() and remove(). They are overridden so
+       that they see (and, if mutable, change) the same para sets as
+       those, including the para sets of the base in an overlay. */
+
+    public ParaSet getOrDefault(Object name, ParaSet defVal) {
+	ParaSet para = get(name);
+	return (para!=null)? para: defVal;
+    }
+
+    public boolean containsValue(Object para) {
+	return layered()? merged().containsValue(para): super.containsValue(para);
+    }
+
+    public void forEach(BiConsumer<? super String, ? super ParaSet> action) {
+	if (layered()) merged().forEach(action);
+	else super.forEach(action);
+    }
+
+    public ParaSet putIfAbsent(String name, ParaSet para) {
+	checkMutable(null);
+	ParaSet old = get(name);
+	return (old!=null)? old: put(name, para);
+    }
+
+    public ParaSet computeIfAbsent(String name, Function<? super String, ? extends ParaSet> f) {
+	checkMutable(null);
+	ParaSet old = get(name);
+	if (old!=null) return old;
+	ParaSet para = f.apply(name);
+	if (para!=null) put(name, para);
+	return para;
+    }
+
+    public ParaSet computeIfPresent(String name, BiFunction<? super String, ? super ParaSet, ? extends ParaSet> f) {
+	checkMutable(null);
+	ParaSet old = get(name);
+	if (old==null) return null;
+	ParaSet para = f.apply(name, old);
+	if (para!=null) put(name, para);
+	else remove(name);
+	return para;
+    }
+
+    public ParaSet compute(String name, BiFunction<? super String, ? super ParaSet, ? extends ParaSet> f) {
+	checkMutable(null);
+	ParaSet old = get(name);
+	ParaSet para = f.apply(name, old);
+	if (para!=null) put(name, para);
+	else if (old!=null) remove(name);
+	return para;
+    }
+
+    public ParaSet merge(String name, ParaSet value, BiFunction<? super ParaSet, ? super ParaSet, ? extends ParaSet> f) {
+	checkMutable(null);
+	ParaSet old = get(name);
+	ParaSet para = (old==null)? value: f.apply(old, value);
+	if (para!=null) put(name, para);
+	else remove(name);
+	return para;
+    }
+
+    public ParaSet replace(String name, ParaSet para) {
+	checkMutable(null);
+	return containsKey(name)? put(name, para): null;
+    }
+
+    public boolean replace(String name, ParaSet oldPara, ParaSet newPara) {
+	checkMutable(null);
+	ParaSet cur = get(name);
+	if (cur==null || !cur.equals(oldPara)) return false;
+	put(name, newPara);
+	return true;
+    }
+
+    public void replaceAll(BiFunction<? super String, ? super ParaSet, ? extends ParaSet> f) {
+	checkMutable(null);
+	for(String name: new Vector<String>(keySet())) put(name, f.apply(name, get(name)));
+    }
+    
     /** A wrapper around get(), which throws an exception (instead of
 	returning null) if the value is not found */
     public ParaSet get2(String name) throws  IllegalInputException {
@@ -57,8 +286,13 @@ public class Config extends HashMap<String,ParaSet> {
 	@param v the value for the new parameter. 
     */
     public void addNewParameter(String name, String key, Vector<String> v){
+	checkMutable(null);
     
-    	ParaSet para = this.get(name);
+    	ParaSet para = super.get(name);
+	if (para==null && base!=null) {
+	    ParaSet basePara = base.get(name);
+	    if (basePara!=null) this.put(name, para=new ParaSet(basePara));
+	}
     	
 	if (para==null){
 	    this.put(name, para=new ParaSet(name));
@@ -77,6 +311,23 @@ public class Config extends HashMap<String,ParaSet> {
 	addNewParameter( name, key, Util.array2vector(val));    
     }
 
+    /** Lists all parameters in effect (with those changed in an
+	overlay taking precedence over the base), one per line, in a
+	sorted order, so that two Configs with the same content produce
+	the same text. This is used to fingerprint the config, e.g. by
+	supply.EvaluationCache.
+     */
+    public String toCanonicalString() {
+	StringBuffer s = new StringBuffer();
+	for(String name: new TreeSet<String>(keySet())) {
+	    ParaSet para = get(name);
+	    for(String key: new TreeSet<String>(para.keySet())) {
+		s.append(name).append(",").append(key).append(",").append(String.join(",", para.get(key))).append("\n");
+	    }
+	}
+	return s.toString();
+    }
+
     
     
 }
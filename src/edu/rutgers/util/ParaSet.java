@@ -2,6 +2,7 @@ package edu.rutgers.util;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.*;
 
 import ec.util.MersenneTwisterFast;
 import sim.util.distribution.*;
@@ -38,6 +39,269 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 
     void setParent( ParaSet _parent) { parent = _parent; }
     ParaSet getParent() { return parent; }
+
+    /** If this ParaSet is an overlay (created by Config.addNewParameter()
+	in an overlay Config), this is the ParaSet it is layered over */
+    private ParaSet base = null;
+
+    /** Creates an empty overlay for the specified ParaSet. Values
+	not found in this overlay will be looked up in the base. */
+    ParaSet(ParaSet _base) {
+	this(_base.name);
+	base = _base;
+	parent = _base.parent;
+    }
+
+    /** Looks up a value, first in this ParaSet, and then (if this is
+	an overlay) in its base. (The "default" para set is not
+	consulted here; the getters do that as needed.) The rows of a
+	frozen ParaSet are returned as copies, so that the caller
+	cannot modify them. */
+    public Vector<String> get(Object key) {
+	Vector<String> v = super.get(key);
+	if (v!=null) return frozen? new Vector<String>(v): v;
+	return (base==null)? null: base.get(key);
+    }
+
+    /** Same as get(), but without copying; for use by the getters,
+	which do not modify the row */
+    private Vector<String> row(String key) {
+	Vector<String> v = super.get(key);
+	if (v==null && base!=null) v = base.row(key);
+	return v;
+    }
+
+    public boolean containsKey(Object key) {
+	return super.containsKey(key) || (base!=null && base.containsKey(key));
+    }
+
+    /** True if the collection views have to be read-only snapshots
+	of all rows in effect, rather than HashMap's own views */
+    private boolean layered() {
+	return base!=null || frozen;
+    }
+
+    /** All rows in effect: those of this ParaSet, together with
+	those of the base (if this is an overlay) that have not been
+	replaced here */
+    private HashMap<String,Vector<String>> merged() {
+	HashMap<String,Vector<String>> h = new HashMap<>();
+	if (base!=null) h.putAll(base.merged());
+	for(Map.Entry<String,Vector<String>> e: super.entrySet()) {
+	    h.put(e.getKey(), frozen? new Vector<String>(e.getValue()): e.getValue());
+	}
+	return h;
+    }
+
+    /** The keys of all rows, including those (if this is an overlay)
+	that are only stored in the base. For an overlay or a frozen
+	ParaSet, this (like values() and entrySet()) is a read-only
+	snapshot. */
+    public Set<String> keySet() {
+	return layered()? Collections.unmodifiableMap(merged()).keySet(): super.keySet();
+    }
+
+    public Collection<Vector<String>> values() {
+	return layered()? Collections.unmodifiableMap(merged()).values(): super.values();
+    }
+
+    public Set<Map.Entry<String,Vector<String>>> entrySet() {
+	return layered()? Collections.unmodifiableMap(merged()).entrySet(): super.entrySet();
+    }
+
+    public int size() {
+	return (base==null)? super.size(): merged().size();
+    }
+
+    public boolean isEmpty() {
+	return size()==0;
+    }
+
+    /** Set by freeze() */
+    private boolean frozen = false;
+
+    /** For a frozen ParaSet: the pre-parsed numeric values of each
+	row, with null for any column that is not a number */
+    private HashMap<String,Double[]> compiled = null;
+
+    /** For a frozen ParaSet: the pre-parsed descriptions of all rows
+	that describe a valid random distribution */
+    private HashMap<String,DistSpec> specs = null;
+
+    /** For a frozen ParaSet: the value of "sumCltMinN" (see
+	getDistribution()), or null if it could not be parsed */
+    private Integer frozenCltMinN = null;
+
+    /** Throws an exception if this ParaSet is frozen, or if the
+	change would have to be made in the base of an overlay */
+    private void checkMutable(Object key) {
+	if (frozen) throw new IllegalStateException("Cannot modify a frozen ParaSet " + name);
+	if (base!=null && key!=null && base.containsKey(key)) throw new UnsupportedOperationException("Cannot remove " + key + " from an overlay of ParaSet " + name + ", since it is stored in the base");
+    }
+
+    public Vector<String> put(String key, Vector<String> v) {
+	checkMutable(null);
+	return super.put(key, v);
+    }
+
+    public void putAll(Map<? extends String, ? extends Vector<String>> m) {
+	checkMutable(null);
+	super.putAll(m);
+    }
+
+    public Vector<String> remove(Object key) {
+	checkMutable(key);
+	return super.remove(key);
+    }
+
+    public void clear() {
+	checkMutable(null);
+	if (base!=null && !base.isEmpty()) throw new UnsupportedOperationException("Cannot clear an overlay of ParaSet " + name + ", since its base is not empty");
+	super.clear();
+    }
+
+    /* HashMap implements the following methods on its own table,
+       bypassing get(), put() and remove(). They are overridden so
+       that they see (and, if mutable, change) the same rows as
+       those, including the rows of the base in an overlay. */
+
+    public Vector<String> getOrDefault(Object key, Vector<String> defVal) {
+	Vector<String> v = get(key);
+	return (v!=null)? v: defVal;
+    }
+
+    public boolean containsValue(Object v) {
+	return layered()? merged().containsValue(v): super.containsValue(v);
+    }
+
+    public void forEach(BiConsumer<? super String, ? super Vector<String>> action) {
+	if (layered()) merged().forEach(action);
+	else super.forEach(action);
+    }
+
+    public Vector<String> putIfAbsent(String key, Vector<String> v) {
+	checkMutable(null);
+	Vector<String> old = get(key);
+	return (old!=null)? old: put(key, v);
+    }
+
+    public Vector<String> computeIfAbsent(String key, Function<? super String, ? extends Vector<String>> f) {
+	checkMutable(null);
+	Vector<String> old = get(key);
+	if (old!=null) return old;
+	Vector<String> v = f.apply(key);
+	if (v!=null) put(key, v);
+	return v;
+    }
+
+    public Vector<String> computeIfPresent(String key, BiFunction<? super String, ? super Vector<String>, ? extends Vector<String>> f) {
+	checkMutable(null);
+	Vector<String> old = get(key);
+	if (old==null) return null;
+	Vector<String> v = f.apply(key, old);
+	if (v!=null) put(key, v);
+	else remove(key);
+	return v;
+    }
+
+    public Vector<String> compute(String key, BiFunction<? super String, ? super Vector<String>, ? extends Vector<String>> f) {
+	checkMutable(null);
+	Vector<String> old = get(key);
+	Vector<String> v = f.apply(key, old);
+	if (v!=null) put(key, v);
+	else if (old!=null) remove(key);
+	return v;
+    }
+
+    public Vector<String> merge(String key, Vector<String> value, BiFunction<? super Vector<String>, ? super Vector<String>, ? extends Vector<String>> f) {
+	checkMutable(null);
+	Vector<String> old = get(key);
+	Vector<String> v = (old==null)? value: f.apply(old, value);
+	if (v!=null) put(key, v);
+	else remove(key);
+	return v;
+    }
+
+    public Vector<String> replace(String key, Vector<String> v) {
+	checkMutable(null);
+	return containsKey(key)? put(key, v): null;
+    }
+
+    public boolean replace(String key, Vector<String> oldV, Vector<String> newV) {
+	checkMutable(null);
+	Vector<String> cur = get(key);
+	if (cur==null || !cur.equals(oldV)) return false;
+	put(key, newV);
+	return true;
+    }
+
+    public void replaceAll(BiFunction<? super String, ? super Vector<String>, ? extends Vector<String>> f) {
+	checkMutable(null);
+	for(String key: new Vector<String>(keySet())) put(key, f.apply(key, get(key)));
+    }
+
+    /** Makes this ParaSet immutable, and parses all numeric values in
+	it, so that the getters won't have to parse them again */
+    void freeze() {
+	if (frozen) return;
+	compiled = new HashMap<>();
+	for(Map.Entry<String,Vector<String>> e: super.entrySet()) {
+	    Vector<String> v = e.getValue();
+	    Double[] row = new Double[v.size()];
+	    for(int j=0; j<row.length; j++) {
+		try {
+		    row[j] = parseDoubleEx(e.getKey(), v.get(j));
+		} catch(IllegalInputException ex) {
+		    row[j] = null; // not a number; e.g. a distribution name
+		}
+	    }
+	    compiled.put(e.getKey(), row);
+	}
+	specs = new HashMap<>();
+	for(Map.Entry<String,Vector<String>> e: super.entrySet()) {
+	    try {
+		DistSpec spec = mkDistSpec(e.getKey(), e.getValue());
+		if (spec!=null) specs.put(e.getKey(), spec);
+	    } catch(IllegalInputException ex) {
+		// Not a valid distribution; getDistribution() will report the error if asked
+	    }
+	}
+	try {
+	    frozenCltMinN = getInt("sumCltMinN", Integer.MAX_VALUE);
+	} catch(IllegalInputException ex) {
+	    // Left null; getDistribution() will report the error if asked
+	}
+	frozen = true;
+    }
+
+    /** Finds the pre-parsed values for the row with the specified key
+	(looking in the base too, if this is an overlay).
+	@return The pre-parsed values, or null if the row does not exist, or
+	is stored in a ParaSet that has not been frozen
+     */
+    private Double[] compiledRow(String key) {
+	if (super.containsKey(key)) return (compiled==null)? null: compiled.get(key);
+	return (base==null)? null: base.compiledRow(key);
+    }
+
+    /** Finds the pre-built distribution description for the row with
+	the specified key (looking in the base too, if this is an overlay).
+	@return The description, or null if the row does not exist, is
+	stored in a ParaSet that has not been frozen, or does not
+	describe a valid distribution
+     */
+    private DistSpec compiledSpec(String key) {
+	if (super.containsKey(key)) return (specs==null)? null: specs.get(key);
+	return (base==null)? null: base.compiledSpec(key);
+    }
+
+    /** The value of "sumCltMinN" (in this para set, or in the
+	"default" one), looked up once for a frozen ParaSet */
+    private int cltMinN() throws IllegalInputException {
+	if (frozen && frozenCltMinN!=null) return frozenCltMinN;
+	if (base!=null && !super.containsKey("sumCltMinN")) return base.cltMinN();
+	return getInt("sumCltMinN", Integer.MAX_VALUE);
+    }
     
     
     void add(CsvData.BasicLineEntry line) throws IllegalInputException {
@@ -47,7 +311,7 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 	String key = line.getCol(1);
 	Vector<String> v = new Vector<>();
 	for(int j=2; j<nCol; j++) v.add(line.getCol(j));
-	if (get(key)!=null) throwII(key, "Duplicate entry in the config file");
+	if (row(key)!=null) throwII(key, "Duplicate entry in the config file");
 	put(key,v);
     }
 
@@ -64,7 +328,7 @@ public class ParaSet extends HashMap<String, Vector<String>> {
     }
 
     public String getString(String key, String defVal) throws IllegalInputException {
-	Vector<String> v = get(key);
+	Vector<String> v = row(key);
 	if (v==null)  return defVal;
 	if (v.size()!=1) throwII(key, "Expected exactly 1 data column");
 	return v.get(0);	
@@ -114,10 +378,16 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 
  
     public Double getDouble(String key, Double defVal) throws IllegalInputException {
-	Vector<String> v = get(key);
-	if (v==null && parent!=null) v = parent.get(key);
+	ParaSet where = this;
+	Vector<String> v = row(key);
+	if (v==null && parent!=null) {
+	    v = parent.row(key);
+	    where = parent;
+	}
 	if (v==null) 	return defVal;
 	if (v.size()!=1) throwII(key, "Expected exactly 1 data column");
+	Double[] c = where.compiledRow(key);
+	if (c!=null && c[0]!=null) return c[0];
 	String s = v.get(0);
 	return  parseDoubleEx(key, s);	
     }
@@ -137,12 +407,13 @@ public class ParaSet extends HashMap<String, Vector<String>> {
     }
 
     public double [] getDoubles(String key) throws IllegalInputException {
-	Vector<String> v = get(key);
+	Vector<String> v = row(key);
 	if (v==null)  throwII(key, "Missing");
 	if (v.size()<1) throwII(key, "Expected at least 1 data column");
+	Double[] c = compiledRow(key);
 	double[] q = new double[v.size()];
 	for(int j=0; j<q.length; j++) {
-	    q[j] = parseDoubleEx(key, v.get(j));
+	    q[j] = (c!=null && c[j]!=null)? c[j]: parseDoubleEx(key, v.get(j));
 	}
 	return q;	
     }
@@ -154,7 +425,7 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 	    
     }
     public Long getLong(String key, Long defVal) throws IllegalInputException {
-	Vector<String> v = get(key);
+	Vector<String> v = row(key);
 	if (v==null)  return defVal;
 	if (v.size()!=1) throwII(key, "Expected exactly 1 data column");
 	String s = v.get(0);
@@ -169,7 +440,7 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 
 
     public Boolean getBoolean(String key, Boolean defVal) throws IllegalInputException {
-	Vector<String> v = get(key);
+	Vector<String> v = row(key);
 	if (v==null)  return defVal;
 	if (v.size()!=1) throwII(key, "Expected exactly 1 data column");
 	String s = v.get(0);
@@ -191,7 +462,7 @@ public class ParaSet extends HashMap<String, Vector<String>> {
     */
 
     public  <T extends Enum<T>> T getEnum(Class<T> retType, String key, T defVal) throws IllegalInputException  {	    
-	Vector<String> v = get(key);
+	Vector<String> v = row(key);
 	if (v==null)  return defVal;
 	if (v.size()!=1) throwII(key, "Expected exactly 1 data column");
 	String x = v.get(0);
@@ -207,7 +478,21 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 
 
     
-    public class MyUniform extends sim.util.distribution.Uniform {
+    /** Draws the sum of n values from dis by adding them up */
+    private static double loopSum(AbstractDistribution dis, long n) {
+	double sum=0;
+	for(long j=0; j<n; j++) {
+	    sum += dis.nextDouble();
+	}
+	return sum;
+    }
+    
+    public class MyUniform extends sim.util.distribution.Uniform implements SummableDistribution {
+	/** Below this n, sums are drawn by adding up n values. The
+	    default (no limit) means that the normal approximation is
+	    never used. */
+	int cltMinN = Integer.MAX_VALUE;
+	private Normal normal = null;
 	public MyUniform(double min, double max, MersenneTwisterFast randomGenerator) {
 	    super(min,max,randomGenerator);
 	}
@@ -215,11 +500,25 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 	public double getMax() { return max;}
 	public double computeMean() {
 	    return  (getMin() + getMax())/2;
-	}	
+	}
+	/** Uses the normal approximation (with the same mean and variance)
+	    for large n */
+	public double nextSum(long n) {
+	    if (n<=0) return 0;
+	    if (n < cltMinN) return loopSum(this, n);
+	    if (normal==null) normal = new Normal(0, 1, randomGenerator);
+	    double var = (getMax()-getMin())*(getMax()-getMin())/12;
+	    return normal.nextDouble(n*computeMean(), Math.sqrt(n*var));
+	}
     }
 
-    public class MyTriangular extends sim.util.distribution.Triangular {
+    public class MyTriangular extends sim.util.distribution.Triangular implements SummableDistribution {
+	/** Below this n, sums are drawn by adding up n values. The
+	    default (no limit) means that the normal approximation is
+	    never used. */
+	int cltMinN = Integer.MAX_VALUE;
 	double _min, _max, _mode;
+	private Normal normal = null;
 	public MyTriangular(double min, double mode, double max, MersenneTwisterFast randomGenerator) {
 	    super(min,mode,max,randomGenerator);
 	    _min = min;
@@ -234,6 +533,61 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 	    if (Math.abs (getMode()-mean) > 1e-6) throw new IllegalArgumentException("No formula for skewed triangular distribution");
 	    return mean;
 	}
+	/** Uses the normal approximation (with the same mean and variance)
+	    for large n. Unlike computeMean(), this works for skewed
+	    triangular distributions as well. */
+	public double nextSum(long n) {
+	    if (n<=0) return 0;
+	    if (n < cltMinN) return loopSum(this, n);
+	    if (normal==null) normal = new Normal(0, 1, randomGenerator);
+	    double a=_min, b=_mode, c=_max;
+	    double mean = (a+b+c)/3;
+	    double var = (a*a + b*b + c*c - a*b - a*c - b*c)/18;
+	    return normal.nextDouble(n*mean, Math.sqrt(n*var));
+	}
+    }
+
+    /** The sum of n Normal(mu,sigma) values is Normal(n*mu, sqrt(n)*sigma) */
+    public static class MyNormal extends Normal implements SummableDistribution {
+	final double _mean, _sd;
+	public MyNormal(double mean, double sd, MersenneTwisterFast randomGenerator) {
+	    super(mean, sd, randomGenerator);
+	    _mean = mean;
+	    _sd = sd;
+	}
+	public double nextSum(long n) {
+	    if (n<=0) return 0;
+	    return nextDouble(n*_mean, Math.sqrt(n)*_sd);
+	}
+    }
+
+    /** The sum of n Exponential(lambda) values is Gamma(n, lambda) */
+    public static class MyExponential extends Exponential implements SummableDistribution {
+	final double _lambda;
+	private final Gamma gamma;
+	public MyExponential(double lambda, MersenneTwisterFast randomGenerator) {
+	    super(lambda, randomGenerator);
+	    _lambda = lambda;
+	    gamma = new Gamma(1, lambda, randomGenerator);
+	}
+	public double nextSum(long n) {
+	    if (n<=0) return 0;
+	    return gamma.nextDouble(n, _lambda);
+	}
+    }
+
+    /** The sum of n Gamma(alpha, lambda) values is Gamma(n*alpha, lambda) */
+    public static class MyGamma extends Gamma implements SummableDistribution {
+	final double _alpha, _lambda;
+	public MyGamma(double alpha, double lambda, MersenneTwisterFast randomGenerator) {
+	    super(alpha, lambda, randomGenerator);
+	    _alpha = alpha;
+	    _lambda = lambda;
+	}
+	public double nextSum(long n) {
+	    if (n<=0) return 0;
+	    return nextDouble(n*_alpha, _lambda);
+	}
     }
 
     /**  binary search for the median of the faultyPortionDistribution */
@@ -276,7 +630,17 @@ public class ParaSet extends HashMap<String, Vector<String>> {
     
     
     /** Creates a random distribution described by the parameters
-	in the specified line of this para set.
+	in the specified line of this para set. The supported types are
+	Binomial,n,p; Uniform,min,max; Normal,mean,sd;
+	Triangular,min,mode,max; Exponential,lambda (mean 1/lambda);
+	Gamma,alpha,lambda (mean alpha/lambda); and EmpiricalWalker,p1,p2,...
+
+	<p>Except for Binomial and EmpiricalWalker, the returned objects
+	implement SummableDistribution. The "sumCltMinN" parameter (in this
+	para set, or in the "default" one) controls from which n on the
+	sums of Uniform and Triangular values are drawn via the normal
+	approximation.
+	
 	@param offset Shift the distribution to the right by this much. Normally 0, this value can be non-zero when modeling disruptions.     
 	@return The distribution, or null if one isn't found. (This is handy for some Pools)
     */
@@ -284,33 +648,41 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 						MersenneTwisterFast random,
 						double offset
 						) throws IllegalInputException {
-	Vector<String> v = get(key);	
-	if (v==null)  return null; // throwII(key, "Missing");  //
-	if (v.size()<1) throwII(key, "No data in the row");
-	if (v.get(0).equals("Binomial")) {
+	DistSpec spec = compiledSpec(key);
+	if (spec==null) {
+	    Vector<String> v = row(key);	
+	    if (v==null)  return null; // throwII(key, "Missing");  //
+	    spec = mkDistSpec(key, v);
+	    if (spec==null) throwII(key, "Random distribution type not supported: " +v.get(0));
+	}
+	double[] p = spec.p;
+	switch(spec.type) {
+	case Binomial:
 	    if (offset!=0) throw new IllegalInputException("Cannot apply non-zero offset ("+offset+") to a binomial distribution");
-	    Vector<Double> p = parseDoubleParams(key, v, 1, 2);
-	    return new Binomial((int)Math.round(p.get(0)),p.get(1), random);
-	} else if (v.get(0).equals("Uniform")) {
-	    Vector<Double> p = parseDoubleParams(key, v, 1, 2);
-	    return new MyUniform(p.get(0)+offset, p.get(1)+offset, random);
-	} else if (v.get(0).equals("Normal")) {
-	    Vector<Double> p = parseDoubleParams(key, v, 1, 2);
-	    return new Normal(p.get(0)+offset,p.get(1), random);
-	} else if (v.get(0).equals("Triangular")) {
-	    Vector<Double> p = parseDoubleParams(key, v, 1, 3);
-	    return new MyTriangular(p.get(0)+offset,p.get(1)+offset, p.get(2)+offset, random);
-	} else if (v.get(0).equals("EmpiricalWalker")) {
-	    double[] pdf = new double[v.size()-1];
-	    for(int j=1; j<v.size(); j++) {
-		pdf[j-1] = Double.parseDouble( v.get(j));
-	    }
-	    return new EmpiricalWalker(pdf, Empirical.NO_INTERPOLATION,
+	    return new Binomial((int)Math.round(p[0]),p[1], random);
+	case Uniform: {
+	    MyUniform u = new MyUniform(p[0]+offset, p[1]+offset, random);
+	    u.cltMinN = cltMinN();
+	    return u;
+	}
+	case Normal:
+	    return new MyNormal(p[0]+offset,p[1], random);
+	case Exponential:
+	    if (offset!=0) throw new IllegalInputException("Cannot apply non-zero offset ("+offset+") to an exponential distribution");
+	    return new MyExponential(p[0], random);
+	case Gamma:
+	    if (offset!=0) throw new IllegalInputException("Cannot apply non-zero offset ("+offset+") to a gamma distribution");
+	    return new MyGamma(p[0], p[1], random);
+	case Triangular: {
+	    MyTriangular t = new MyTriangular(p[0]+offset,p[1]+offset, p[2]+offset, random);
+	    t.cltMinN = cltMinN();
+	    return t;
+	}
+	case EmpiricalWalker:
+	    return new EmpiricalWalker(p.clone(), Empirical.NO_INTERPOLATION,
 				       random);
-
-	} else {
-	    throwII(key, "Random distribution type not supported: " +v.get(0));
-	    return null;
+	default:
+	    throw new AssertionError("Unhandled distribution type " + spec.type);
 	}
     }
 
@@ -319,14 +691,71 @@ public class ParaSet extends HashMap<String, Vector<String>> {
 	  return  getDistribution(key, random, 0);
       }
 
-    private Vector<Double> parseDoubleParams(String key,Vector<String> v, int startPos, int n)  throws IllegalInputException{
+    /** Creates a random distribution described by the parameters in
+	the specified line of this para set, using the random number
+	stream that the specified RandomStreams object provides for
+	this line (named "paraSetName.key"). In the independent mode,
+	each distribution thus draws from its own stream.
+    */
+    public AbstractDistribution getDistribution(String key,
+						RandomStreams streams) throws IllegalInputException {
+	return  getDistribution(key, streams.get(name + "." + key), 0);
+    }
+
+    /** The random distribution types supported by getDistribution() */
+    enum DistType { Binomial, Uniform, Normal, Exponential, Gamma, Triangular, EmpiricalWalker };
+
+    /** A parsed description of a random distribution (the type name
+	and the numeric parameters from a config line), from which
+	getDistribution() creates the distribution object */
+    static class DistSpec {
+	final DistType type;
+	final double[] p;
+	DistSpec(DistType _type, double[] _p) {
+	    type = _type;
+	    p = _p;
+	}
+    }
+
+    /** Parses a config line that describes a random distribution.
+	@param v The data columns of the line: the type name, followed by the parameters
+	@return The description, or null if the first column is not the name of a supported type
+     */
+    private DistSpec mkDistSpec(String key, Vector<String> v) throws IllegalInputException {
+	if (v.size()<1) throwII(key, "No data in the row");
+	DistType type;
+	try {
+	    type = DistType.valueOf(v.get(0));
+	} catch(IllegalArgumentException ex) {
+	    return null;
+	}
+	switch(type) {
+	case Exponential:
+	    return new DistSpec(type, parseDoubleParams(key, v, 1, 1));
+	case Triangular:
+	    return new DistSpec(type, parseDoubleParams(key, v, 1, 3));
+	case EmpiricalWalker: {
+	    double[] pdf = new double[v.size()-1];
+	    for(int j=1; j<v.size(); j++) {
+		pdf[j-1] = Double.parseDouble( v.get(j));
+	    }
+	    return new DistSpec(type, pdf);
+	}
+	default:
+	    return new DistSpec(type, parseDoubleParams(key, v, 1, 2));
+	}
+    }
+
+    private double[] parseDoubleParams(String key,Vector<String> v, int startPos, int n)  throws IllegalInputException{
 	if (v.size()!=startPos+n) throwII(key, "Expected exactly 3 data column");
 
-	Vector<Double> p = new Vector<>();
+	double[] p = new double[n];
+	Double[] c = compiledRow(key);
 
 	for(int j=0; j<n; j++) {
-	    String s = v.get(startPos+j);
-	    p.add(parseDoubleEx(key,s));
+	    Double x = (c!=null)? c[startPos+j]: null;
+	    if (x==null) x = parseDoubleEx(key, v.get(startPos+j));
+	    p[j] = x;
 	}
 	return p;
     }
@@ -0,0 +1,69 @@
+package edu.rutgers.util;
+
+import java.util.*;
+
+import ec.util.MersenneTwisterFast;
+
+/** Supplies random number generators to the elements of a supply
+    chain model. In the "independent" mode, each name (e.g. the name
+    of a supply chain node, or a node name plus the name of one of
+    its parameters) gets its own generator, whose seed is derived
+    deterministically from the run's seed and the name. This way, the
+    sequence of numbers a node draws does not depend on how many
+    numbers other nodes have drawn, so a disruption in one node does
+    not shift the random numbers seen by all others, and runs of
+    different scenarios with the same seed use common random numbers.
+
+    <p>In the "shared" mode, all names get the same generator (normally,
+    the model's SimState.random), which reproduces the behavior of
+    the models before per-node streams were introduced.
+ */
+public class RandomStreams implements java.io.Serializable {
+
+    /** The generator used for all names in the shared mode; null in
+	the independent mode */
+    private final MersenneTwisterFast shared;
+    /** The run's seed, from which the independent streams are derived */
+    public final long seed;
+    private final HashMap<String,MersenneTwisterFast> streams = new HashMap<>();
+
+    private RandomStreams(MersenneTwisterFast _shared, long _seed) {
+	shared = _shared;
+	seed = _seed;
+    }
+
+    /** Creates a source of a separate stream for each name */
+    public static RandomStreams independent(long seed) {
+	return new RandomStreams(null, seed);
+    }
+
+    /** Creates a source that gives the same generator for all names */
+    public static RandomStreams shared(MersenneTwisterFast random) {
+	return new RandomStreams(random, 0);
+    }
+
+    public boolean isIndependent() {
+	return shared==null;
+    }
+
+    /** @return The generator for the specified name. In the
+	independent mode, it is created on the first request; later
+	requests for the same name return the same object. */
+    public synchronized MersenneTwisterFast get(String name) {
+	if (shared!=null) return shared;
+	MersenneTwisterFast r = streams.get(name);
+	if (r==null) streams.put(name, r = new MersenneTwisterFast(seedArray(seed, name)));
+	return r;
+    }
+
+    /** The key for the generator's init-by-array seeding: both halves
+	of the seed, followed by all characters of the name, so that
+	different (seed, name) pairs give different keys. */
+    private static int[] seedArray(long seed, String name) {
+	int[] a = new int[name.length() + 2];
+	a[0] = (int)seed;
+	a[1] = (int)(seed >>> 32);
+	for(int j=0; j<name.length(); j++) a[j+2] = name.charAt(j);
+	return a;
+    }
+}
@@ -0,0 +1,43 @@
+package edu.rutgers.util;
+
+import sim.util.distribution.*;
+
+/** A distribution that can draw the sum of n independent values
+    from itself without having to make n separate draws. This is
+    used when the time needed to process a batch is computed as the
+    sum of the processing times of its n units (as in sc3.DelayRules
+    with unit=true, or sc3.CombinationDistribution).
+
+    <p>The distributions created by ParaSet.getDistribution()
+    implement this interface. For Normal, Exponential, and Gamma
+    distributions the sum is drawn exactly (the sum of Normals is
+    Normal; the sum of Exponentials or Gammas with the same rate is
+    Gamma). For Uniform and Triangular distributions, the sum is
+    drawn from a Normal distribution with the same mean and variance,
+    but only if n is no smaller than the threshold set by the
+    "sumCltMinN" parameter; otherwise, the n values are drawn and
+    added up as usual.
+ */
+public interface SummableDistribution {
+
+    /** Draws the sum of n independent values from this distribution.
+	For n&le;0 (an empty sum), returns 0. */
+    double nextSum(long n);
+
+    /** Draws the sum of n independent values from the specified
+	distribution, using the shortcut provided by
+	SummableDistribution if available. For n=1, this is simply
+	d.nextDouble(); for n&le;0, 0.
+     */
+    static double nextSum(AbstractDistribution d, long n) {
+	if (n<=0) return 0;
+	if (n==1) return d.nextDouble();
+	if (d instanceof SummableDistribution) return ((SummableDistribution)d).nextSum(n);
+	double sum=0;
+	for(long j=0; j<n; j++) {
+	    sum += d.nextDouble();
+	}
+	return sum;
+    }
+    
+}